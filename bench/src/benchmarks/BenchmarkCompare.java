@@ -0,0 +1,85 @@
+/**
+ * BenchmarkCompare compares two JMH JSON result files, benchmark by benchmark and parameter set by
+ * parameter set, and exits with status 1 if any score got worse by more than the threshold.
+ * A change only counts when it is larger than both runs' error margins, so noise does not fail a build.
+ *
+ *   BenchmarkCompare <baseline.json> <candidate.json> [threshold percent, default 10]
+ */
+
+package benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class BenchmarkCompare {
+    private record Score(double value, double error, String unit, boolean higherIsBetter) {
+    }
+
+    private BenchmarkCompare() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkCompare <baseline.json> <candidate.json> [threshold percent]");
+            System.exit(2);
+        }
+        Map<String, Score> baseline = read(new File(args[0]));
+        Map<String, Score> candidate = read(new File(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "Baseline", "Candidate", "Change");
+        for (Map.Entry<String, Score> entry : candidate.entrySet()) {
+            Score after = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", entry.getKey(), "-", after.value(), "new");
+                continue;
+            }
+            double change = (after.value() - before.value()) / before.value() * 100;
+            // Positive means slower, whichever way the mode counts.
+            double worse = after.higherIsBetter() ? -change : change;
+            boolean significant = Math.abs(after.value() - before.value()) > before.error() + after.error();
+            boolean regression = significant && worse > threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%% %s%s%n", entry.getKey(), before.value(), after.value(),
+                    change, after.unit(), regression ? "  REGRESSION" : "");
+        }
+        for (String name : baseline.keySet()) {
+            if (!candidate.containsKey(name)) {
+                System.out.printf("%-70s %14.3f %14s %9s%n", name, baseline.get(name).value(), "-", "missing");
+            }
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+            System.exit(1);
+        }
+    }
+
+    // Reads the primary score of every result, keyed by benchmark name and parameters.
+    private static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText().replace("benchmarks.", ""));
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            JsonNode metric = result.path("primaryMetric");
+            String mode = result.path("mode").asText();
+            double error = metric.path("scoreError").asDouble();
+            scores.put(key.toString(), new Score(metric.path("score").asDouble(), Double.isNaN(error) ? 0 : error,
+                    metric.path("scoreUnit").asText(), mode.equals("thrpt")));
+        }
+        return scores;
+    }
+}
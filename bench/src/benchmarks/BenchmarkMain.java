@@ -0,0 +1,70 @@
+/**
+ * BenchmarkMain runs the benchmark suite and writes JMH's JSON results to bench/results/<label>.json,
+ * where the label defaults to the current commit, so runs from different commits can be compared
+ * with BenchmarkCompare.
+ *
+ *   BenchmarkMain [label] [JMH include regex]
+ */
+
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public final class BenchmarkMain {
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String label = args.length > 0 ? args[0] : currentCommit();
+        String include = args.length > 1 ? args[1] : "benchmarks\\..*Benchmark";
+        Path results = Path.of(System.getProperty("cafepos.bench.results", "bench/results"));
+        Files.createDirectories(results);
+        Path output = results.resolve(label + ".json");
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(output.toString())
+                .build();
+        new Runner(options).run();
+        System.out.println("Results written to " + output);
+    }
+
+    // Returns the short hash of HEAD, with a -dirty suffix for uncommitted changes, or "local" outside git.
+    // Also labels the UI performance runs (uiperf.UiPerfHarness).
+    public static String currentCommit() {
+        try {
+            String commit = git("rev-parse", "--short", "HEAD");
+            return git("status", "--porcelain", "--untracked-files=no").isEmpty() ? commit : commit + "-dirty";
+        } catch (IOException e) {
+            return "local";
+        }
+    }
+
+    private static String git(String... args) throws IOException {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (InputStream output = process.getInputStream()) {
+            String text = new String(output.readAllBytes(), StandardCharsets.UTF_8).trim();
+            if (process.waitFor() != 0) {
+                throw new IOException("git " + String.join(" ", args) + " failed: " + text);
+            }
+            return text;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for git", e);
+        }
+    }
+}
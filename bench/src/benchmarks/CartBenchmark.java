@@ -0,0 +1,119 @@
+/**
+ * CartBenchmark measures the cart operations a till runs on every tap, at cart sizes from one line
+ * to a thousand. Each benchmark leaves the cart as it found it, so every invocation sees the same size.
+ */
+
+package benchmarks;
+
+import models.CartManager;
+import models.Catalog;
+import models.Inventory;
+import models.Money;
+import models.Order;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CartBenchmark {
+    @Param({"1", "10", "100", "1000"})
+    public int cartLines;
+
+    private Catalog catalog;
+    private CartManager cart;
+    private Order order;
+    // A product that is never in the cart.
+    private String extraProduct;
+    private int extraSku;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalog = SyntheticCatalog.of(cartLines + 1);
+        cart = new CartManager(catalog, new Inventory(catalog));
+        fill(cart);
+        extraProduct = SyntheticCatalog.name(cartLines);
+        extraSku = catalog.find(extraProduct).getSku();
+
+        CartManager orderCart = new CartManager(catalog, new Inventory(catalog));
+        fill(orderCart);
+        order = orderCart.checkout(1, "Bench", Money.ofCents(Long.MAX_VALUE / 4), 10);
+    }
+
+    // Adds a new line at the end of the cart, then removes it again.
+    @Benchmark
+    public int addItem() {
+        cart.addItem(extraProduct, 1);
+        cart.removeItem(cartLines);
+        return cart.getItemCount();
+    }
+
+    // The same, by SKU, as the till's grid and search do: no name lookup.
+    @Benchmark
+    public int addItemBySku() {
+        cart.addItem(extraSku, 1);
+        cart.removeItem(cartLines);
+        return cart.getItemCount();
+    }
+
+    // Adds to a line already in the cart, which merges into it, then puts the quantity back.
+    @Benchmark
+    public int addItemToExistingLine() {
+        int index = next++ % cartLines;
+        cart.addItem(SyntheticCatalog.name(index), 1);
+        cart.updateQuantity(index, 1);
+        return cart.getItemCount();
+    }
+
+    @Benchmark
+    public Money getTotal() {
+        return cart.getTotal();
+    }
+
+    // Removes the first line, the most expensive position, then adds it back at the end.
+    // Lines are re-added in the order they were removed, so the cart cycles through the same products.
+    @Benchmark
+    public int removeItem() {
+        String name = cart.getCartItems().get(0).getName();
+        cart.removeItem(0);
+        cart.addItem(name, 1);
+        return cart.getItemCount();
+    }
+
+    // Renders the bill for an order of cartLines lines.
+    @Benchmark
+    public String renderBill() {
+        return cart.renderBill(order);
+    }
+
+    // Fills an empty cart; the baseline for generateBill.
+    @Benchmark
+    public int fillCart() {
+        fill(resetCart());
+        return cart.getItemCount();
+    }
+
+    // Fills the cart and checks it out. Subtract fillCart to get the cost of the checkout and bill alone.
+    @Benchmark
+    public String generateBill() {
+        CartManager empty = resetCart();
+        fill(empty);
+        return empty.generateBill(Money.ofCents(Long.MAX_VALUE / 4), 10);
+    }
+
+    private CartManager resetCart() {
+        cart.clearCart();
+        return cart;
+    }
+
+    private void fill(CartManager target) {
+        for (int i = 0; i < cartLines; i++) {
+            target.addItem(SyntheticCatalog.name(i), 1 + i % 3);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * CatalogBenchmark measures start-up work: parsing the bundled catalog, reading it back from its
+ * binary snapshot, and building the catalog indexes, inventory and an empty cart.
+ */
+
+package benchmarks;
+
+import models.CartManager;
+import models.Catalog;
+import models.Inventory;
+import models.Product;
+import org.openjdk.jmh.annotations.*;
+import storage.CatalogLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CatalogBenchmark {
+    private byte[] productsJson;
+    private URL productsUrl;
+    private Path snapshotDirectory;
+    private Path snapshot;
+    private List<Product> products;
+    private Catalog catalog;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        productsUrl = CatalogBenchmark.class.getResource("/products.json");
+        try (InputStream inputStream = productsUrl.openStream()) {
+            productsJson = inputStream.readAllBytes();
+        }
+        snapshotDirectory = Files.createTempDirectory("cafe-pos-bench");
+        snapshot = snapshotDirectory.resolve("catalog.bin");
+        products = CatalogLoader.load(productsUrl, snapshot);
+        catalog = new Catalog(products);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(snapshotDirectory);
+    }
+
+    @Benchmark
+    public List<Product> parseJson() throws IOException {
+        return CatalogLoader.parse(new ByteArrayInputStream(productsJson));
+    }
+
+    // Loads through the snapshot written in setUp, as every start after the first does.
+    @Benchmark
+    public List<Product> loadSnapshot() throws IOException {
+        return CatalogLoader.load(productsUrl, snapshot);
+    }
+
+    @Benchmark
+    public Catalog buildCatalog() {
+        return new Catalog(products);
+    }
+
+    // Everything a new till session needs once the catalog is loaded.
+    @Benchmark
+    public CartManager newCartManager() {
+        return new CartManager(catalog, new Inventory(catalog));
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * ImageDecodeBenchmark measures decoding the bundled product JPEGs, at full size and at the
+ * sizes ImageCache requests for the product grid and the cart.
+ */
+
+package benchmarks;
+
+import javafx.scene.image.Image;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageDecodeBenchmark {
+    @Param({"espresso.jpeg", "croissant.jpeg", "ham_and_cheese_sandwich.jpeg"})
+    public String image;
+
+    @Param({"0", "80", "50"})
+    public int size;
+
+    private byte[] jpeg;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (InputStream inputStream = ImageDecodeBenchmark.class.getResourceAsStream("/images/" + image)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("images/" + image + " not found");
+            }
+            jpeg = inputStream.readAllBytes();
+        }
+    }
+
+    // Decodes synchronously, as ImageCache's background loader does; size 0 decodes at full resolution.
+    @Benchmark
+    public Image decode() {
+        Image decoded = new Image(new ByteArrayInputStream(jpeg), size, size, true, true);
+        if (decoded.isError()) {
+            throw new IllegalStateException("Failed to decode " + image, decoded.getException());
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * SyntheticCatalog builds catalogs of any size for benchmarks, so cart operations can be measured
+ * with far more distinct lines than the bundled menu has products.
+ */
+
+package benchmarks;
+
+import models.Catalog;
+import models.Money;
+import models.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class SyntheticCatalog {
+    private static final String[] CATEGORIES = {"Coffee", "Tea", "Cold Drinks", "Bakery", "Breakfast", "Lunch"};
+    private static final String[] IMAGES = {"/images/espresso.jpeg", "/images/greentea.jpeg", "/images/smoothie.jpeg",
+            "/images/croissant.jpeg", "/images/pancakes.jpeg", "/images/ham_and_cheese_sandwich.jpeg"};
+
+    private SyntheticCatalog() {
+    }
+
+    // Returns a catalog of the given number of untracked products, spread evenly over six categories.
+    // Product names are "Item 00000", "Item 00001", ... so they sort in creation order.
+    public static Catalog of(int size) {
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            products.add(product(i));
+        }
+        return new Catalog(products);
+    }
+
+    public static String name(int index) {
+        return String.format("Item %05d", index);
+    }
+
+    private static Product product(int index) {
+        Product product = new Product();
+        product.setName(name(index));
+        product.setCategory(CATEGORIES[index % CATEGORIES.length]);
+        product.setImage(IMAGES[index % IMAGES.length]);
+        product.setPrice(Money.ofCents(150 + (index * 37L) % 900));
+        return product;
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * CashierScript describes how cashiers ring up orders during a load test: what they sell, how big
+ * orders are, and how often they remove lines, start over or give a discount. Each order's steps are
+ * drawn from a random generator seeded with the order number, so every run replays the same orders.
+ */
+
+package loadtest;
+
+import models.Catalog;
+import models.Product;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+public record CashierScript(Map<String, Integer> categoryMix, int minItems, int maxItems, int maxQuantity,
+                            double removeRate, double clearRate, double discountRate, double discountPercentage) {
+    // One step of an order.
+    public sealed interface Step permits Add, Remove, Clear, Discount {
+    }
+
+    public record Add(String product, int quantity) implements Step {
+    }
+
+    // Removes the line at the index, taken modulo the number of lines in the cart.
+    public record Remove(int index) implements Step {
+    }
+
+    public record Clear() implements Step {
+    }
+
+    public record Discount(double percentage) implements Step {
+    }
+
+    public CashierScript {
+        if (minItems <= 0 || maxItems < minItems) {
+            throw new IllegalArgumentException("Items per order must be a range of at least 1, got " + minItems + "-" + maxItems);
+        }
+        if (maxQuantity <= 0) {
+            throw new IllegalArgumentException("Maximum quantity must be greater than 0");
+        }
+        for (double rate : new double[]{removeRate, clearRate, discountRate}) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("Rates must be between 0 and 1, got " + rate);
+            }
+        }
+        categoryMix = Map.copyOf(categoryMix);
+    }
+
+    // Returns a script with an even mix over the catalog's categories and typical cafe orders.
+    public static CashierScript typical(Catalog catalog) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String category : catalog.getCategories()) {
+            mix.put(category, 1);
+        }
+        return new CashierScript(mix, 1, 6, 3, 0.05, 0.02, 0.2, 10);
+    }
+
+    // Parses a category mix such as "Coffee:50,Food:30,Dessert:20".
+    public static Map<String, Integer> parseMix(String text) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String entry : text.split(",")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected category:weight, got " + entry);
+            }
+            int weight = Integer.parseInt(entry.substring(separator + 1).trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Category weights cannot be negative: " + entry);
+            }
+            mix.put(entry.substring(0, separator).trim(), weight);
+        }
+        return mix;
+    }
+
+    // Plans the steps of one order. The order is billed after its last step.
+    public List<Step> plan(Catalog catalog, long orderNumber, long seed) {
+        SplittableRandom random = new SplittableRandom(seed * 31 + orderNumber);
+        List<String> categories = new ArrayList<>(categoryMix.keySet());
+        int totalWeight = 0;
+        for (String category : categories) {
+            if (catalog.getProducts(category).isEmpty()) {
+                throw new IllegalArgumentException("No products in category: " + category);
+            }
+            totalWeight += categoryMix.get(category);
+        }
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("The category mix needs at least one positive weight");
+        }
+
+        List<Step> steps = new ArrayList<>();
+        int items = random.nextInt(minItems, maxItems + 1);
+        for (int i = 0; i < items; i++) {
+            steps.add(new Add(pick(catalog, categories, totalWeight, random).getName(), random.nextInt(1, maxQuantity + 1)));
+            if (random.nextDouble() < removeRate) {
+                steps.add(new Remove(random.nextInt(i + 1)));
+            }
+        }
+        if (random.nextDouble() < clearRate) {
+            // The customer changes their mind: the cart is cleared and one item rung up again.
+            steps.add(new Clear());
+            steps.add(new Add(pick(catalog, categories, totalWeight, random).getName(), 1));
+        }
+        if (random.nextDouble() < discountRate) {
+            steps.add(new Discount(discountPercentage));
+        }
+        return steps;
+    }
+
+    private Product pick(Catalog catalog, List<String> categories, int totalWeight, SplittableRandom random) {
+        int ticket = random.nextInt(totalWeight);
+        for (String category : categories) {
+            ticket -= categoryMix.get(category);
+            if (ticket < 0) {
+                List<Product> products = catalog.getProducts(category);
+                return products.get(random.nextInt(products.size()));
+            }
+        }
+        throw new IllegalStateException("Category weights changed while picking");
+    }
+}
@@ -0,0 +1,288 @@
+/**
+ * RushHourLoad drives CheckoutService the way a morning rush does and reports latency percentiles for
+ * adding items and generating bills, for each number of tills in a sweep.
+ *
+ * Orders arrive on a fixed open-loop schedule: order i is due at start + i / rate, whether or not the tills
+ * are keeping up. A till starts the order when it is free; how long the customer waited for it is tillWait,
+ * a staffing number. From then on each step is due one tap gap after the previous one, and add-item and bill
+ * latency are measured from when the step was due, not from when the till got to it. A stall in the service
+ * therefore counts against every step it delays (no coordinated omission).
+ * Orders no till has started by the end of the run are reported as abandoned.
+ *
+ *   RushHourLoad [key=value ...]
+ *     rate=20              orders per second, across all tills
+ *     duration=60          measured seconds per run, after warmup=10 seconds
+ *     threads=1,2,4,8      tills (worker threads and checkout sessions) to sweep
+ *     tapGap=150           milliseconds between a cashier's taps within an order
+ *     items=1-6            items per order; quantity=3 is the largest quantity per item
+ *     mix=Coffee:50,...    order mix by category, default even over the catalog
+ *     remove=0.05 clear=0.02 discount=0.2 discountPercentage=10
+ *     catalog=bundled      or a number of synthetic products
+ *     seed=42 output=DIR   DIR receives one .hgrm percentile file per histogram and run
+ */
+
+package loadtest;
+
+import benchmarks.SyntheticCatalog;
+import models.CartManager;
+import models.Catalog;
+import models.Inventory;
+import models.Money;
+import models.Product;
+import org.HdrHistogram.Histogram;
+import services.CheckoutService;
+import storage.CatalogLoader;
+import storage.OrderJournal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public final class RushHourLoad {
+    // Latencies are recorded in microseconds, up to a minute, to three significant digits.
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Catalog catalog;
+    private final CashierScript script;
+    private final double rate;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final long tapGapNanos;
+    private final long seed;
+
+    // Histograms for one run.
+    private static final class Results {
+        final Histogram addItem = histogram();
+        final Histogram removeItem = histogram();
+        final Histogram bill = histogram();
+        final Histogram saved = histogram();
+        final Histogram tillWait = histogram();
+        final AtomicLong orders = new AtomicLong();
+        final AtomicLong scheduled = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        Map<String, Histogram> byName() {
+            Map<String, Histogram> histograms = new LinkedHashMap<>();
+            histograms.put("addItem", addItem);
+            histograms.put("removeItem", removeItem);
+            histograms.put("bill", bill);
+            histograms.put("bill+saved", saved);
+            histograms.put("tillWait", tillWait);
+            return histograms;
+        }
+
+        private static Histogram histogram() {
+            return new Histogram(HIGHEST_LATENCY_MICROS, 3);
+        }
+    }
+
+    public RushHourLoad(Catalog catalog, CashierScript script, double rate, long warmupNanos, long durationNanos,
+                        long tapGapNanos, long seed) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be greater than 0");
+        }
+        this.catalog = catalog;
+        this.script = script;
+        this.rate = rate;
+        this.warmupNanos = warmupNanos;
+        this.durationNanos = durationNanos;
+        this.tapGapNanos = tapGapNanos;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        Catalog catalog = loadCatalog(options.getOrDefault("catalog", "bundled"));
+        CashierScript typical = CashierScript.typical(catalog);
+        String[] items = options.getOrDefault("items", typical.minItems() + "-" + typical.maxItems()).split("-");
+        CashierScript script = new CashierScript(
+                options.containsKey("mix") ? CashierScript.parseMix(options.get("mix")) : typical.categoryMix(),
+                Integer.parseInt(items[0]), Integer.parseInt(items[items.length - 1]),
+                Integer.parseInt(options.getOrDefault("quantity", String.valueOf(typical.maxQuantity()))),
+                Double.parseDouble(options.getOrDefault("remove", String.valueOf(typical.removeRate()))),
+                Double.parseDouble(options.getOrDefault("clear", String.valueOf(typical.clearRate()))),
+                Double.parseDouble(options.getOrDefault("discount", String.valueOf(typical.discountRate()))),
+                Double.parseDouble(options.getOrDefault("discountPercentage", String.valueOf(typical.discountPercentage()))));
+        RushHourLoad load = new RushHourLoad(catalog, script,
+                Double.parseDouble(options.getOrDefault("rate", "20")),
+                TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", "10"))),
+                TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "60"))),
+                TimeUnit.MILLISECONDS.toNanos(Long.parseLong(options.getOrDefault("tapGap", "150"))),
+                Long.parseLong(options.getOrDefault("seed", "42")));
+        Path output = options.containsKey("output") ? Files.createDirectories(Path.of(options.get("output"))) : null;
+
+        System.out.printf("%d products, %.1f orders/s, %s items per order, tap gap %s ms%n", catalog.size(),
+                load.rate, options.getOrDefault("items", "1-6"), options.getOrDefault("tapGap", "150"));
+        for (String threads : options.getOrDefault("threads", "1,2,4,8").split(",")) {
+            int tills = Integer.parseInt(threads.trim());
+            Results results = load.run(tills);
+            report(System.out, tills, results, load.durationNanos);
+            if (output != null) {
+                for (Map.Entry<String, Histogram> entry : results.byName().entrySet()) {
+                    try (PrintStream out = new PrintStream(output.resolve(entry.getKey() + "-" + tills + "-tills.hgrm").toFile())) {
+                        entry.getValue().outputPercentileDistribution(out, 1.0);
+                    }
+                }
+            }
+        }
+    }
+
+    // Runs the schedule against the given number of tills, each with its own session,
+    // over a fresh journal in a temporary directory.
+    Results run(int tills) throws IOException, InterruptedException {
+        Path journalDirectory = Files.createTempDirectory("cafe-pos-load");
+        Results results = new Results();
+        try (OrderJournal journal = OrderJournal.open(journalDirectory)) {
+            CheckoutService service = new CheckoutService(catalog, new Inventory(catalog), journal);
+            AtomicLong nextOrder = new AtomicLong();
+            long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            long measureFrom = start + warmupNanos;
+            long end = measureFrom + durationNanos;
+            long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < tills; i++) {
+                Thread worker = new Thread(() -> {
+                    String sessionId = service.openSession("Till");
+                    while (true) {
+                        long orderNumber = nextOrder.getAndIncrement();
+                        long due = start + orderNumber * interval;
+                        // Stops at the end of the schedule, and stops taking late orders once the run is over.
+                        if (due >= end || System.nanoTime() >= end) break;
+                        ringUp(service, sessionId, orderNumber, due, due >= measureFrom ? results : null);
+                    }
+                    service.closeSession(sessionId);
+                }, "till-" + i);
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            results.scheduled.set((end - measureFrom + interval - 1) / interval);
+        } finally {
+            try (var files = Files.list(journalDirectory)) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(journalDirectory);
+        }
+        return results;
+    }
+
+    // Rings up one order, each step at its due time or as soon as the previous step returns. Warmup orders pass null results.
+    private void ringUp(CheckoutService service, String sessionId, long orderNumber, long due, Results results) {
+        List<CashierScript.Step> steps = script.plan(catalog, orderNumber, seed);
+        waitUntil(due);
+        // How long the customer waited for a free till; zero while the tills keep up.
+        record(results == null ? null : results.tillWait, due);
+        long stepDue = Math.max(due, System.nanoTime());
+        try {
+            for (CashierScript.Step step : steps) {
+                waitUntil(stepDue);
+                switch (step) {
+                    case CashierScript.Add add -> {
+                        service.addItem(sessionId, add.product(), add.quantity());
+                        record(results == null ? null : results.addItem, stepDue);
+                    }
+                    case CashierScript.Remove remove -> {
+                        int lines = service.withCart(sessionId, cart -> cart.getCartItems().size());
+                        if (lines > 0) {
+                            service.removeItem(sessionId, remove.index() % lines);
+                            record(results == null ? null : results.removeItem, stepDue);
+                        }
+                    }
+                    case CashierScript.Clear clear -> service.clearCart(sessionId);
+                    case CashierScript.Discount discount -> service.setDiscountPercentage(sessionId, discount.percentage());
+                }
+                stepDue += tapGapNanos;
+            }
+
+            waitUntil(stepDue);
+            if (service.withCart(sessionId, cart -> cart.getItemCount() == 0)) {
+                // Every line was removed; the customer walked away.
+                return;
+            }
+            double discount = service.withCart(sessionId, CartManager::getDiscountPercentage);
+            Money payment = service.withCart(sessionId, CartManager::getDiscountedTotal);
+            CompletableFuture<Void> saved = service.checkout(sessionId, payment, discount).saved();
+            if (results != null) {
+                record(results.bill, stepDue);
+                long billDue = stepDue;
+                saved.thenRun(() -> record(results.saved, billDue));
+                results.orders.incrementAndGet();
+            }
+        } catch (IllegalArgumentException e) {
+            if (results != null) {
+                results.errors.incrementAndGet();
+            }
+            service.clearCart(sessionId);
+        }
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static void record(Histogram histogram, long due) {
+        if (histogram != null) {
+            long micros = Math.max(0, (System.nanoTime() - due) / 1000);
+            synchronized (histogram) {
+                histogram.recordValue(Math.min(micros, HIGHEST_LATENCY_MICROS));
+            }
+        }
+    }
+
+    private static void report(PrintStream out, int tills, Results results, long durationNanos) {
+        double seconds = durationNanos / 1e9;
+        long abandoned = Math.max(0, results.scheduled.get() - results.tillWait.getTotalCount());
+        out.printf("%n%d till(s): %d orders (%.1f/s), %d rejected, %d abandoned%n", tills, results.orders.get(),
+                results.orders.get() / seconds, results.errors.get(), abandoned);
+        out.printf("  %-12s %10s %10s %10s %10s %10s%n", "latency us", "count", "p50", "p99", "p99.9", "max");
+        for (Map.Entry<String, Histogram> entry : results.byName().entrySet()) {
+            Histogram histogram = entry.getValue();
+            synchronized (histogram) {
+                out.printf("  %-12s %10d %10d %10d %10d %10d%n", entry.getKey(), histogram.getTotalCount(),
+                        histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                        histogram.getValueAtPercentile(99.9), histogram.getMaxValue());
+            }
+        }
+    }
+
+    // Loads the bundled catalog, or builds a synthetic one of the given size. Stock is left untracked,
+    // so a long run never sells out.
+    private static Catalog loadCatalog(String catalog) throws IOException {
+        if (!catalog.equals("bundled")) {
+            return SyntheticCatalog.of(Integer.parseInt(catalog));
+        }
+        try (InputStream inputStream = RushHourLoad.class.getResourceAsStream("/products.json")) {
+            if (inputStream == null) {
+                throw new IllegalStateException("products.json not found");
+            }
+            List<Product> products = CatalogLoader.parse(inputStream);
+            for (Product product : products) {
+                product.setQuantity(Product.UNTRACKED);
+            }
+            return new Catalog(products);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * PulseProbe measures what one UI action costs the FX thread: the handler itself, the CSS and layout
+ * passes of every pulse until the screen has settled, and the bytes the FX thread allocated meanwhile.
+ *
+ * It hooks the pre- and post-layout pulse listeners of every showing window's scene, dialogs included,
+ * so a dialog an action opens is measured too. A measurement ends on the first check after a pulse that
+ * finds the action's condition met and no showing scene needing another layout pass.
+ *
+ * Rendering runs on the render thread and time spent waiting for the next pulse is idle, so neither is
+ * counted: busy time is handler plus layout, which is what a cashier's next tap would wait for.
+ */
+
+package uiperf;
+
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+final class PulseProbe {
+    // One measured action. Times are in nanoseconds.
+    record Sample(long handlerNanos, long layoutNanos, int pulses, long allocatedBytes) {
+        long busyNanos() {
+            return handlerNanos + layoutNanos;
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final Set<Scene> probed = new HashSet<>();
+
+    // State of the running measurement, only touched on the FX thread.
+    private CompletableFuture<Sample> running;
+    private BooleanSupplier ready;
+    private long startNanos;
+    private long startAllocated;
+    private long handlerEndNanos;
+    private long layoutStartNanos;
+    private long layoutNanos;
+    private int pulses;
+    private boolean checkQueued;
+
+    // Starts probing every window shown from now on. Call on the FX thread.
+    void install() {
+        for (Window window : Window.getWindows()) {
+            probe(window);
+        }
+        Window.getWindows().addListener((ListChangeListener<Window>) change -> {
+            while (change.next()) {
+                for (Window window : change.getAddedSubList()) {
+                    probe(window);
+                }
+            }
+        });
+    }
+
+    // Runs the action on the FX thread and completes once the screen has settled and ready returns true.
+    // The action may block in a nested event loop, e.g. showAndWait on a dialog; its handler time then
+    // ends at the first pulse, which is when the dialog is first laid out.
+    CompletableFuture<Sample> measure(Runnable action, BooleanSupplier ready) {
+        CompletableFuture<Sample> sample = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            if (running != null) {
+                sample.completeExceptionally(new IllegalStateException("A measurement is already running"));
+                return;
+            }
+            running = sample;
+            this.ready = ready;
+            layoutNanos = 0;
+            pulses = 0;
+            handlerEndNanos = 0;
+            startAllocated = threads.getCurrentThreadAllocatedBytes();
+            startNanos = System.nanoTime();
+            try {
+                action.run();
+            } catch (RuntimeException | Error e) {
+                running = null;
+                sample.completeExceptionally(e);
+                return;
+            }
+            if (handlerEndNanos == 0) {
+                handlerEndNanos = System.nanoTime();
+            }
+            // Makes sure a pulse follows even if the action changed nothing on screen.
+            Platform.requestNextPulse();
+        });
+        return sample;
+    }
+
+    private void probe(Window window) {
+        if (window.getScene() != null) {
+            probe(window.getScene());
+        }
+        window.sceneProperty().addListener((observable, previous, scene) -> {
+            if (scene != null) {
+                probe(scene);
+            }
+        });
+    }
+
+    private void probe(Scene scene) {
+        if (probed.add(scene)) {
+            scene.addPreLayoutPulseListener(this::preLayout);
+            scene.addPostLayoutPulseListener(this::postLayout);
+        }
+    }
+
+    private void preLayout() {
+        if (running == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (handlerEndNanos == 0) {
+            handlerEndNanos = now;
+        }
+        layoutStartNanos = now;
+    }
+
+    private void postLayout() {
+        if (running == null) {
+            return;
+        }
+        layoutNanos += System.nanoTime() - layoutStartNanos;
+        // Every scene runs its listeners once per pulse, so the check is queued once, after all of them.
+        if (!checkQueued) {
+            checkQueued = true;
+            pulses++;
+            Platform.runLater(this::checkSettled);
+        }
+    }
+
+    private void checkSettled() {
+        checkQueued = false;
+        if (running == null || handlerEndNanos == 0) {
+            return;
+        }
+        if (!ready.getAsBoolean() || needsLayout()) {
+            Platform.requestNextPulse();
+            return;
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - startAllocated;
+        CompletableFuture<Sample> sample = running;
+        running = null;
+        sample.complete(new Sample(handlerEndNanos - startNanos, layoutNanos, pulses, allocated));
+    }
+
+    private boolean needsLayout() {
+        for (Window window : Window.getWindows()) {
+            Scene scene = window.getScene();
+            if (window.isShowing() && scene != null && scene.getRoot() != null && scene.getRoot().isNeedsLayout()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
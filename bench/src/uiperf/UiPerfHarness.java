@@ -0,0 +1,422 @@
+/**
+ * UiPerfHarness loads the real POS screen (posview.fxml with POSViewController) on the headless Monocle
+ * platform with software rendering, so UI hot spots can be measured without a desktop: on a build agent,
+ * over SSH, or on a dev box in the background.
+ *
+ * It publishes a synthetic catalog, journals a synthetic order history, fills a cart and then scripts the
+ * cashier's actions through the screen's own controls:
+ *
+ *   categorySwitch   pick the next category, which rebuilds the product grid and dropdown
+ *   addItem          add a new line to a cart of `cart` lines, in bursts of `burst` taps
+ *   historyOpen      open the Order History dialog over `orders` orders, then close it
+ *
+ * Each action is measured with PulseProbe: busy time (handler plus CSS and layout until the screen has
+ * settled), pulses and FX-thread allocation. Results go to bench/results/ui-<label>.json. Given a baseline
+ * from an earlier run, the run fails with status 1 if any scenario's median busy time or allocation got
+ * worse by more than the threshold.
+ *
+ *   UiPerfHarness [key=value ...]
+ *     catalog=2000 cart=100 burst=10 orders=500   sizes of the synthetic data
+ *     warmup=10 runs=30 idle=50                   actions per scenario, and ms between them
+ *     label=<commit> baseline=FILE threshold=25   threshold in percent
+ *
+ * Needs the Monocle jar (org.testfx:openjfx-monocle) on the classpath. Monocle, the software pipeline and
+ * a throwaway data directory are selected unless set with -D on the command line.
+ */
+
+package uiperf;
+
+import benchmarks.BenchmarkMain;
+import benchmarks.SyntheticCatalog;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import controllers.POSViewController;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import models.Catalog;
+import models.Money;
+import models.Product;
+import services.CheckoutService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+public final class UiPerfHarness {
+    // An action that has not settled by then is reported as a failure rather than measured.
+    private static final long SETTLE_TIMEOUT_SECONDS = 10;
+    // Smaller changes than these are noise, whatever the percentage.
+    private static final double MIN_REGRESSION_MILLIS = 0.5;
+    private static final double MIN_REGRESSION_KB = 16;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    // Median and tail of one scenario, in milliseconds and kilobytes.
+    private record Summary(int runs, double busyP50, double busyP90, double busyMax, double handlerP50,
+                           double layoutP50, double pulsesP50, double allocP50, double allocP90) {
+    }
+
+    private final PulseProbe probe = new PulseProbe();
+    private final int warmup;
+    private final int runs;
+    private final long idleMillis;
+
+    private Stage stage;
+    private Parent root;
+
+    private UiPerfHarness(int warmup, int runs, long idleMillis) {
+        this.warmup = warmup;
+        this.runs = runs;
+        this.idleMillis = idleMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        int catalogSize = Integer.parseInt(options.getOrDefault("catalog", "2000"));
+        int cartLines = Integer.parseInt(options.getOrDefault("cart", "100"));
+        int burst = Integer.parseInt(options.getOrDefault("burst", "10"));
+        int orders = Integer.parseInt(options.getOrDefault("orders", "500"));
+        double threshold = Double.parseDouble(options.getOrDefault("threshold", "25"));
+        String label = options.getOrDefault("label", BenchmarkMain.currentCommit());
+
+        defaultProperty("glass.platform", "Monocle");
+        defaultProperty("monocle.platform", "Headless");
+        defaultProperty("prism.order", "sw");
+        defaultProperty("cafepos.data.dir", Files.createTempDirectory("cafe-pos-ui-perf").toString());
+        defaultProperty("cafepos.printer", "none");
+        defaultProperty("cafepos.jfr", "false");
+
+        Catalog catalog = SyntheticCatalog.of(catalogSize);
+        String cartCategory = catalog.getCategories().get(0);
+        List<String> cartProducts = catalog.getProductNames(cartCategory);
+        if (cartLines + burst > cartProducts.size()) {
+            throw new IllegalArgumentException("cart + burst must be at most " + cartProducts.size()
+                    + ", the products in " + cartCategory + " of a " + catalogSize + "-product catalog");
+        }
+        Catalog.publish(catalog);
+        seedHistory(orders);
+
+        UiPerfHarness harness = new UiPerfHarness(Integer.parseInt(options.getOrDefault("warmup", "10")),
+                Integer.parseInt(options.getOrDefault("runs", "30")), Long.parseLong(options.getOrDefault("idle", "50")));
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(started::countDown);
+        Platform.setImplicitExit(false);
+        started.await();
+
+        Map<String, Summary> results = new LinkedHashMap<>();
+        try {
+            harness.open();
+            harness.fillCart(cartCategory, cartProducts.subList(0, cartLines));
+            results.put("categorySwitch", harness.categorySwitch(catalog.getCategories()));
+            results.put("addItem", harness.addItem(cartCategory, cartProducts, cartLines, burst));
+            results.put("historyOpen", harness.historyOpen());
+        } finally {
+            Platform.exit();
+        }
+
+        System.out.printf("%d products, %d cart lines, bursts of %d, %d orders in history%n",
+                catalogSize, cartLines, burst, orders);
+        report(results);
+        ObjectNode document = mapper.createObjectNode();
+        document.put("label", label);
+        ObjectNode settings = document.putObject("options");
+        options.forEach(settings::put);
+        ObjectNode scenarios = document.putObject("scenarios");
+        results.forEach((name, summary) -> scenarios.set(name, toJson(summary)));
+        Path output = Path.of(System.getProperty("cafepos.bench.results", "bench/results"));
+        Files.createDirectories(output);
+        Path file = output.resolve("ui-" + label + ".json");
+        mapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), document);
+        System.out.println("Results written to " + file);
+
+        int regressions = options.containsKey("baseline")
+                ? compare(mapper.readTree(Path.of(options.get("baseline")).toFile()), results, threshold) : 0;
+        if (regressions > 0) {
+            System.out.println(regressions + " scenario metric(s) regressed by more than " + threshold + "%");
+        }
+        // Shared services keep non-daemon threads, e.g. the journal writer.
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    // Journals orders with one to four random lines each, so the history dialog has something to page.
+    private static void seedHistory(int orders) {
+        CheckoutService service = CheckoutService.shared();
+        List<Product> products = service.getCatalog().getProducts();
+        Random random = new Random(42);
+        String session = service.openSession("Seed");
+        List<CompletableFuture<Void>> saved = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            int lines = 1 + random.nextInt(4);
+            for (int j = 0; j < lines; j++) {
+                service.addItem(session, products.get(random.nextInt(products.size())).getSku(), 1 + random.nextInt(3));
+            }
+            saved.add(service.checkout(session, Money.ofCents(100_000_000L), 0).saved());
+        }
+        for (CompletableFuture<Void> order : saved) {
+            order.join();
+        }
+        service.closeSession(session);
+    }
+
+    // Builds and shows the POS screen the way SceneManager does, and starts a session on it.
+    private void open() throws Exception {
+        onFx(() -> {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/posview.fxml"));
+            try {
+                root = loader.load();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load posview.fxml: " + e.getMessage(), e);
+            }
+            Scene scene = new Scene(root, 900, 600);
+            scene.getStylesheets().add(Objects.requireNonNull(getClass().getResource("/styles.css")).toExternalForm());
+            stage = new Stage();
+            stage.setScene(scene);
+            stage.show();
+            POSViewController controller = loader.getController();
+            controller.startSession("Perf");
+            probe.install();
+            return null;
+        });
+    }
+
+    // Adds one of each product through the Add to Cart button. Not measured.
+    private void fillCart(String category, List<String> products) throws Exception {
+        onFx(() -> {
+            comboBox("#categoryComboBox").getSelectionModel().select(category);
+            for (String product : products) {
+                tapAdd(product);
+            }
+            return null;
+        });
+        settle();
+    }
+
+    private Summary categorySwitch(List<String> categories) throws Exception {
+        ComboBox<String> categoryBox = comboBox("#categoryComboBox");
+        return measure("categorySwitch", run -> () -> categoryBox.getSelectionModel()
+                .select(categories.get((run + 1) % categories.size())), () -> true, run -> {
+        });
+    }
+
+    // Each tap adds a product that is not in the cart yet; after every burst the new lines are removed again.
+    private Summary addItem(String category, List<String> products, int cartLines, int burst) throws Exception {
+        onFx(() -> {
+            comboBox("#categoryComboBox").getSelectionModel().select(category);
+            return null;
+        });
+        settle();
+        TableView<?> cart = (TableView<?>) root.lookup("#cartTable");
+        Button remove = button("Remove Item");
+        return measure("addItem", run -> () -> tapAdd(products.get(cartLines + run % burst)), () -> true, run -> {
+            if (run % burst == burst - 1) {
+                for (int i = 0; i < burst; i++) {
+                    cart.getSelectionModel().clearAndSelect(cart.getItems().size() - 1);
+                    remove.fire();
+                }
+            }
+        });
+    }
+
+    private Summary historyOpen() throws Exception {
+        Button history = button("Order History");
+        return measure("historyOpen", run -> history::fire, this::dialogShowing, run -> {
+            for (Window window : List.copyOf(Window.getWindows())) {
+                if (window != stage && window.isShowing()) {
+                    window.hide();
+                }
+            }
+        });
+    }
+
+    // Runs warmup and then measured actions. afterEach runs on the FX thread after every action and is not measured.
+    private Summary measure(String name, IntFunction<Runnable> action, BooleanSupplier ready,
+                            IntConsumer afterEach) throws Exception {
+        List<PulseProbe.Sample> samples = new ArrayList<>(runs);
+        for (int run = 0; run < warmup + runs; run++) {
+            PulseProbe.Sample sample;
+            try {
+                sample = probe.measure(action.apply(run), ready).get(SETTLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException(name + " did not settle within " + SETTLE_TIMEOUT_SECONDS + " seconds");
+            }
+            if (run >= warmup) {
+                samples.add(sample);
+            }
+            int finished = run;
+            onFx(() -> {
+                afterEach.accept(finished);
+                return null;
+            });
+            settle();
+        }
+        return summarize(samples);
+    }
+
+    // Waits for a pulse to pass after everything queued so far, then lets background work such as
+    // thumbnail decoding finish, so one action's leftovers are not measured as the next one's.
+    private void settle() throws Exception {
+        Thread.sleep(idleMillis);
+        CompletableFuture<Void> pulsed = new CompletableFuture<>();
+        onFx(() -> {
+            Runnable[] listener = new Runnable[1];
+            listener[0] = () -> {
+                stage.getScene().removePostLayoutPulseListener(listener[0]);
+                pulsed.complete(null);
+            };
+            stage.getScene().addPostLayoutPulseListener(listener[0]);
+            Platform.requestNextPulse();
+            return null;
+        });
+        pulsed.get(SETTLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private boolean dialogShowing() {
+        for (Window window : Window.getWindows()) {
+            if (window != stage && window.isShowing()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Picks the product in the dropdown and presses Add to Cart, as a cashier would. On the FX thread.
+    private void tapAdd(String product) {
+        comboBox("#productComboBox").getSelectionModel().select(product);
+        ((TextField) root.lookup("#quantityField")).setText("1");
+        button("Add to Cart").fire();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ComboBox<String> comboBox(String selector) {
+        return (ComboBox<String>) root.lookup(selector);
+    }
+
+    // The sidebar buttons have no fx:id, so they are found by their text.
+    private Button button(String text) {
+        for (Node node : root.lookupAll(".button")) {
+            if (node instanceof Button button && text.equals(button.getText())) {
+                return button;
+            }
+        }
+        throw new IllegalStateException("No button labelled " + text + " in posview.fxml");
+    }
+
+    private static <T> T onFx(Supplier<T> task) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(task.get());
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+        });
+        try {
+            return result.get(SETTLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private static Summary summarize(List<PulseProbe.Sample> samples) {
+        long[] busy = samples.stream().mapToLong(PulseProbe.Sample::busyNanos).sorted().toArray();
+        long[] handler = samples.stream().mapToLong(PulseProbe.Sample::handlerNanos).sorted().toArray();
+        long[] layout = samples.stream().mapToLong(PulseProbe.Sample::layoutNanos).sorted().toArray();
+        long[] pulses = samples.stream().mapToLong(PulseProbe.Sample::pulses).sorted().toArray();
+        long[] allocated = samples.stream().mapToLong(PulseProbe.Sample::allocatedBytes).sorted().toArray();
+        return new Summary(samples.size(), millis(percentile(busy, 0.5)), millis(percentile(busy, 0.9)),
+                millis(busy[busy.length - 1]), millis(percentile(handler, 0.5)), millis(percentile(layout, 0.5)),
+                percentile(pulses, 0.5), percentile(allocated, 0.5) / 1024.0, percentile(allocated, 0.9) / 1024.0);
+    }
+
+    // Nearest-rank percentile of sorted values.
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static ObjectNode toJson(Summary summary) {
+        return mapper.createObjectNode()
+                .put("runs", summary.runs())
+                .put("busyP50", summary.busyP50())
+                .put("busyP90", summary.busyP90())
+                .put("busyMax", summary.busyMax())
+                .put("handlerP50", summary.handlerP50())
+                .put("layoutP50", summary.layoutP50())
+                .put("pulsesP50", summary.pulsesP50())
+                .put("allocP50", summary.allocP50())
+                .put("allocP90", summary.allocP90());
+    }
+
+    private static void report(Map<String, Summary> results) {
+        System.out.printf("%-16s %5s %9s %9s %9s %9s %9s %7s %10s %10s%n", "Scenario", "Runs", "Busy p50",
+                "p90", "max", "Handler", "Layout", "Pulses", "Alloc p50", "p90");
+        results.forEach((name, s) -> System.out.printf("%-16s %5d %7.2fms %7.2fms %7.2fms %7.2fms %7.2fms %7.0f %8.0fKB %8.0fKB%n",
+                name, s.runs(), s.busyP50(), s.busyP90(), s.busyMax(), s.handlerP50(), s.layoutP50(), s.pulsesP50(),
+                s.allocP50(), s.allocP90()));
+    }
+
+    // Compares median busy time and allocation with the baseline run and returns the number of regressions.
+    private static int compare(JsonNode baseline, Map<String, Summary> results, double threshold) {
+        System.out.println("Against baseline " + baseline.path("label").asText() + ":");
+        int regressions = 0;
+        for (Map.Entry<String, Summary> entry : results.entrySet()) {
+            JsonNode before = baseline.path("scenarios").path(entry.getKey());
+            if (before.isMissingNode()) {
+                System.out.printf("  %-16s new%n", entry.getKey());
+                continue;
+            }
+            regressions += compare(entry.getKey() + " busy", before.path("busyP50").asDouble(),
+                    entry.getValue().busyP50(), "ms", MIN_REGRESSION_MILLIS, threshold);
+            regressions += compare(entry.getKey() + " alloc", before.path("allocP50").asDouble(),
+                    entry.getValue().allocP50(), "KB", MIN_REGRESSION_KB, threshold);
+        }
+        return regressions;
+    }
+
+    private static int compare(String metric, double before, double after, String unit, double minimum, double threshold) {
+        double change = before == 0 ? 0 : (after - before) / before * 100;
+        boolean regression = after - before > minimum && change > threshold;
+        System.out.printf("  %-24s %10.2f%s %10.2f%s %+8.1f%%%s%n", metric, before, unit, after, unit, change,
+                regression ? "  REGRESSION" : "");
+        return regression ? 1 : 0;
+    }
+
+    private static void defaultProperty(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
@@ -1,21 +1,41 @@
+import diagnostics.Diagnostics;
+import diagnostics.Metrics;
 import javafx.application.Application;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Scene;
 import javafx.stage.Stage;
-
-import java.util.Objects;
+import services.CheckoutServer;
+import services.CheckoutService;
+import storage.CatalogWatcher;
+import views.SceneManager;
 
 public class PointOfSale extends Application {
+    private CheckoutServer checkoutServer;
+
     @Override
     public void start(Stage stage) throws Exception {
-        System.out.println("Loading loginview.fxml: " + getClass().getResource("/loginview.fxml"));
-        System.out.println("Loading styles.css: " + getClass().getResource("/styles.css"));
-        FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource("/loginview.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 300, 400);
-        scene.getStylesheets().add(Objects.requireNonNull(getClass().getResource("/styles.css")).toExternalForm());
-        stage.setTitle("Cafe POS Login");
-        stage.setScene(scene);
+        Diagnostics.start();
+        // Reloads the catalog while the till is running when products.json in the data directory changes.
+        CatalogWatcher.start();
+        // The POS screen is prepared in the background while the login screen is shown.
+        SceneManager sceneManager = SceneManager.start(stage);
         stage.show();
+        SceneManager.recordStartup(Metrics.Timer.STARTUP_LOGIN);
+        sceneManager.posReady().thenRun(() -> SceneManager.recordStartup(Metrics.Timer.STARTUP_TILL));
+
+        // Serves other terminals from this till when a port is configured with -Dcafepos.server.port=<port>.
+        // Only local ones unless -Dcafepos.server.bind opens it to the network.
+        Integer serverPort = Integer.getInteger("cafepos.server.port");
+        if (serverPort != null) {
+            checkoutServer = new CheckoutServer(CheckoutService.shared(), CheckoutServer.configuredAddress(), serverPort);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (checkoutServer != null) {
+            checkoutServer.close();
+        }
+        CatalogWatcher.stop();
+        Diagnostics.stop();
     }
 
     public static void main(String[] args) {
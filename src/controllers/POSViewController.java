@@ -4,39 +4,54 @@
 
 package controllers;
 
+import diagnostics.Metrics;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Scene;
+import javafx.geometry.Side;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.layout.FlowPane;
-import javafx.scene.layout.VBox;
-import javafx.stage.Stage;
+import javafx.stage.Modality;
 import models.CartItem;
+import models.Catalog;
 import models.Product;
 import models.CartManager;
-
-import java.text.DecimalFormat;
+import models.Inventory;
+import models.Money;
+import models.Order;
+import printing.ReceiptSpooler;
+import services.CheckoutService;
+import storage.OrderHistory;
+import views.DiagnosticsView;
+import views.ImageCache;
+import views.OrderHistoryView;
+import views.ProductTileGrid;
+import views.SceneManager;
+import views.StationView;
+import views.ZReportView;
+
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class POSViewController {
     // FXML-injected UI components
     @FXML private Label usernameLabel;
+    @FXML private TextField searchField;
     @FXML private ComboBox<String> categoryComboBox;
     @FXML private ComboBox<String> productComboBox;
     @FXML private TextField quantityField;
-    @FXML private FlowPane productGrid;
+    @FXML private ProductTileGrid productGrid;
     @FXML private ImageView previewImage;
+    @FXML private Label lowStockLabel;
+    @FXML private Label printerStatusLabel;
     @FXML private TableView<CartItem> cartTable;
-    @FXML private TableColumn<CartItem, ImageView> imageColumn;
+    @FXML private TableColumn<CartItem, String> imageColumn;
     @FXML private TableColumn<CartItem, String> nameColumn;
     @FXML private TableColumn<CartItem, Integer> quantityColumn;
     @FXML private TableColumn<CartItem, String> priceColumn;
@@ -44,20 +59,44 @@ public class POSViewController {
     @FXML private Label subtotalLabel;
     @FXML private TextField discountField;
     @FXML private Label discountedTotalLabel;
+    @FXML private Label promotionsLabel;
     @FXML private TextField paymentField;
 
-    // Manages the cart and product database.
+    // Number of type-ahead suggestions shown under the search field.
+    private static final int SEARCH_SUGGESTIONS = 8;
+
+    // Type-ahead suggestions for the search field, refreshed on every keystroke.
+    private final ContextMenu searchSuggestions = new ContextMenu();
+
+    // Prints receipts in the background, or null if no printer is configured.
+    private ReceiptSpooler receiptSpooler;
+
+    // Headless checkout backend; this terminal's cart is one of its sessions.
+    private CheckoutService checkoutService;
+    private Catalog catalog;
+
+    // The logged-in cashier's session and its cart, observed by the cart table. Changes go through checkoutService.
+    // The view is built once and reused; each login resumes that cashier's parked session.
+    private String sessionId;
     private CartManager cartManager;
 
-    // Stores the history of the generated bills.
-    private List<String> orderHistory;
+    // Shows low-stock warnings from any checkout session; removed again on logout.
+    // The product is looked up on the FX thread, where the catalog field is swapped.
+    private final Inventory.LowStockListener lowStockListener = (sku, available) ->
+            Platform.runLater(() -> {
+                Product product = catalog.get(sku);
+                lowStockLabel.setText("Low stock: " + (product != null ? product.getName() : "SKU " + sku)
+                        + " (" + available + " left)");
+                lowStockLabel.setVisible(true);
+            });
+
+    // Swaps in a newly published catalog version on the FX thread; see refreshCatalog.
+    private final Catalog.ChangeListener catalogListener = (previous, current) ->
+            Platform.runLater(() -> refreshCatalog(current));
 
     // Stores the currently logged-in user's username.
     private String loggedInUser;
 
-    // DecimalFormat for formatting monetry values to 2 decimal places.
-    private static final DecimalFormat df = new DecimalFormat("#.00");
-
     // Updates the username Label
     private void updateUsernameLabel() {
         if (usernameLabel != null) {
@@ -71,6 +110,49 @@ public class POSViewController {
         }
     }
 
+    // Resumes the cashier's parked session, or starts one with an empty cart, and shows it.
+    // The cashier is recorded on every order they complete.
+    public void startSession(String username) {
+        loggedInUser = username;
+        sessionId = checkoutService.resumeSession(username);
+        cartManager = checkoutService.getCart(sessionId);
+        checkoutService.getInventory().addLowStockListener(lowStockListener);
+        cartTable.setItems(cartManager.getCartItems());
+        updateUsernameLabel();
+
+        searchField.clear();
+        quantityField.clear();
+        paymentField.clear();
+        double discountPercentage = cartManager.getDiscountPercentage();
+        discountField.setText(discountPercentage > 0 ? Double.toString(discountPercentage) : "");
+        lowStockLabel.setVisible(false);
+        printerStatusLabel.setVisible(false);
+        categoryComboBox.getSelectionModel().selectFirst();
+        updateProductGrid();
+        updateSubtotal();
+    }
+
+    // Parks the session: the cart stays reserved for the cashier until they log back in.
+    public void parkSession() {
+        if (sessionId == null) {
+            return;
+        }
+        searchSuggestions.hide();
+        checkoutService.getInventory().removeLowStockListener(lowStockListener);
+        cartTable.setItems(FXCollections.observableArrayList());
+        sessionId = null;
+        cartManager = null;
+        loggedInUser = null;
+    }
+
+    // Ends the session; closing it returns the stock reserved by an abandoned cart.
+    public void endSession() {
+        if (sessionId != null) {
+            checkoutService.closeSession(sessionId);
+            parkSession();
+        }
+    }
+
     // Handles Username CLicks
     @FXML
     private void handleUsernameClick() {
@@ -89,126 +171,215 @@ public class POSViewController {
         alert.showAndWait();
     }
 
-    // Initializes the POS view by setting up the cart, categories, and table columns.
-    // Also sets up listeners for dynamic updates.
+    // Initializes the POS view by setting up the categories and table columns.
+    // Also sets up listeners for dynamic updates. The cart is attached when a session starts.
     public void initialize() {
-        cartManager = new CartManager();
-        orderHistory = new ArrayList<>();
-
-        updateUsernameLabel();
+        checkoutService = CheckoutService.shared();
+        catalog = checkoutService.getCatalog();
+        receiptSpooler = ReceiptSpooler.shared();
 
         // Populates category dropdown with distinct, sorted categories.
-        List<String> categories = cartManager.getProductDatabase().values().stream()
-                .map(Product::getCategory)
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
-        categoryComboBox.setItems(FXCollections.observableArrayList(categories));
+        categoryComboBox.setItems(FXCollections.observableList(catalog.getCategories()));
         categoryComboBox.getSelectionModel().selectFirst();
+        productGrid.setOnProductSelected(product -> {
+            productComboBox.getSelectionModel().select(product.getName());
+            updateImagePreview();
+        });
         updateProductGrid();
 
         // Configures table columns for cart display.
-        imageColumn.setCellValueFactory(cellData -> {
-            String imagePath = cellData.getValue().getImage();
-            ImageView imageView = new ImageView();
-            try {
-                Image image = new Image(Objects.requireNonNull(getClass().getResourceAsStream(imagePath)));
-                imageView.setImage(image);
+        // Image cells keep one ImageView each and are recycled by the table as rows change.
+        imageColumn.setCellValueFactory(new PropertyValueFactory<>("image"));
+        imageColumn.setCellFactory(column -> new TableCell<>() {
+            private final ImageView imageView = new ImageView();
+
+            {
                 imageView.setFitWidth(50);
                 imageView.setFitHeight(50);
                 imageView.setPreserveRatio(true);
-            } catch (Exception e) {
-                System.err.println("Failed to load image: " + imagePath);
             }
-            return javafx.beans.binding.Bindings.createObjectBinding(() -> imageView);
+
+            @Override
+            protected void updateItem(String imagePath, boolean empty) {
+                super.updateItem(imagePath, empty);
+                if (empty || imagePath == null) {
+                    ImageCache.load(imageView, null, ImageCache.Size.CART);
+                    setGraphic(null);
+                } else {
+                    ImageCache.load(imageView, imagePath, ImageCache.Size.CART);
+                    setGraphic(imageView);
+                }
+            }
         });
         nameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
-        quantityColumn.setCellValueFactory(new PropertyValueFactory<>("quantity"));
-        priceColumn.setCellValueFactory(cellData -> new SimpleStringProperty("$" + df.format(cellData.getValue().getPrice())));
-        totalColumn.setCellValueFactory(cellData -> new SimpleStringProperty("$" + df.format(cellData.getValue().getTotal())));
+        quantityColumn.setCellValueFactory(cellData -> cellData.getValue().quantityProperty().asObject());
+        priceColumn.setCellValueFactory(cellData -> new SimpleStringProperty("$" + cellData.getValue().getPrice()));
+        totalColumn.setCellValueFactory(cellData -> {
+            CartItem item = cellData.getValue();
+            return Bindings.createStringBinding(() -> "$" + item.getTotal(), item.quantityProperty());
+        });
 
-        cartTable.setItems(FXCollections.observableArrayList(cartManager.getCartItems()));
-        updateSubtotal();
+        // The table observes the session's cart directly and applies only the changed rows; see startSession.
 
         // Updates the subtotal whenever the discount is applied
-        discountField.textProperty().addListener((obs, oldValue, newValue) -> updateSubtotal());
+        discountField.textProperty().addListener((obs, oldValue, newValue) -> {
+            if (sessionId != null) applyDiscount();
+        });
+
+        // Builds the search index in the background so the first keystroke does not wait for it.
+        CompletableFuture.runAsync(catalog::getSearchIndex);
+
+        // Follows catalog reloads; the view lives as long as the application, so the listener is never removed.
+        Catalog.addChangeListener(catalogListener);
+
+        // Refreshes the search suggestions as the cashier types.
+        searchField.textProperty().addListener((obs, oldValue, newValue) -> updateSearchSuggestions());
+        searchField.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (!focused) searchSuggestions.hide();
+        });
+    }
+
+    // Shows a new catalog version without rebuilding the screen: the category and product dropdowns are
+    // only replaced if their entries changed, selections are kept where they still exist, and the grid
+    // keeps its scroll position. Cart lines keep the prices they were rung up at.
+    private void refreshCatalog(Catalog current) {
+        if (current.getVersion() <= catalog.getVersion()) {
+            return;
+        }
+        catalog = current;
+        String selectedCategory = categoryComboBox.getSelectionModel().getSelectedItem();
+        if (!categoryComboBox.getItems().equals(current.getCategories())) {
+            categoryComboBox.setItems(FXCollections.observableList(current.getCategories()));
+            if (current.getCategories().contains(selectedCategory)) {
+                categoryComboBox.getSelectionModel().select(selectedCategory);
+            } else {
+                // Selecting another category rebuilds the grid and dropdown through updateProductGrid.
+                categoryComboBox.getSelectionModel().selectFirst();
+                return;
+            }
+        }
+        if (selectedCategory == null) {
+            return;
+        }
+        try (Metrics.Timing timing = Metrics.start(Metrics.Timer.GRID_REBUILD, "reload " + selectedCategory)) {
+            productGrid.refreshProducts(current.getProducts(selectedCategory));
+            List<String> names = current.getProductNames(selectedCategory);
+            if (!productComboBox.getItems().equals(names)) {
+                String selectedProduct = productComboBox.getSelectionModel().getSelectedItem();
+                productComboBox.setItems(FXCollections.observableList(names));
+                if (names.contains(selectedProduct)) {
+                    productComboBox.getSelectionModel().select(selectedProduct);
+                } else {
+                    productComboBox.getSelectionModel().selectFirst();
+                }
+            }
+            updateImagePreview();
+        }
+    }
+
+    // Shows the best matches for the search text under the search field.
+    private void updateSearchSuggestions() {
+        List<Product> matches = catalog.getSearchIndex().search(searchField.getText(), SEARCH_SUGGESTIONS);
+        if (matches.isEmpty()) {
+            searchSuggestions.hide();
+            return;
+        }
+        List<MenuItem> items = new ArrayList<>(matches.size());
+        for (Product product : matches) {
+            MenuItem item = new MenuItem(product.getName() + "  ($" + product.getPrice() + ")");
+            item.setOnAction(e -> addSearchResult(product));
+            items.add(item);
+        }
+        searchSuggestions.getItems().setAll(items);
+        if (!searchSuggestions.isShowing() && searchField.getScene() != null) {
+            searchSuggestions.show(searchField, Side.BOTTOM, 0, 0);
+        }
+    }
+
+    // Adds the top search match to the cart when the cashier presses Enter.
+    @FXML
+    private void handleSearchEnter() {
+        List<Product> matches = catalog.getSearchIndex().search(searchField.getText(), 1);
+        if (matches.isEmpty()) {
+            showAlert("No Match", "No product matches \"" + searchField.getText().trim() + "\".");
+            return;
+        }
+        addSearchResult(matches.get(0));
+    }
+
+    // Adds a searched product to the cart, using the quantity field if it is filled in, and clears the search.
+    private void addSearchResult(Product product) {
+        try {
+            String quantityText = quantityField.getText().trim();
+            int quantity = quantityText.isEmpty() ? 1 : Integer.parseInt(quantityText);
+
+            checkoutService.addItem(sessionId, product.getSku(), quantity);
+            updateSubtotal();
+
+            searchSuggestions.hide();
+            searchField.clear();
+            quantityField.clear();
+        } catch (NumberFormatException e) {
+            showAlert("Invalid Input", "Please enter a valid quantity.");
+        } catch (IllegalArgumentException e) {
+            showAlert("Error", e.getMessage());
+        }
     }
 
     // Updates the product grid and product dropdown based on the selected category.
     @FXML
     private void updateProductGrid() {
-        productGrid.getChildren().clear();
         String selectedCategory = categoryComboBox.getSelectionModel().getSelectedItem();
-        if (selectedCategory == null) return;
-
-        // Filter and sort products by the selected category.
-        List<Product> products = cartManager.getProductDatabase().values().stream()
-                .filter(p -> p.getCategory().equals(selectedCategory))
-                .sorted(Comparator.comparing(Product::getName))
-                .collect(Collectors.toList());
-
-        // Updates product dropdown
-        productComboBox.setItems(FXCollections.observableArrayList(products.stream()
-                .map(Product::getName)
-                .collect(Collectors.toList())));
-        productComboBox.getSelectionModel().selectFirst();
-
-        // Creates a product card for each product in the grid
-        for (Product product : products) {
-            VBox productBox = new VBox(5);
-            productBox.getStyleClass().add("product-box");
-            ImageView imageView = new ImageView();
-            try {
-                Image image = new Image(Objects.requireNonNull(getClass().getResourceAsStream(product.getImage())));
-                imageView.setImage(image);
-                imageView.setFitWidth(80);
-                imageView.setFitHeight(80);
-                imageView.setPreserveRatio(true);
-            } catch (Exception e) {
-                System.err.println("Failed to load image: " + product.getImage());
-            }
-            Label nameLabel = new Label(product.getName());
-            nameLabel.getStyleClass().add("product-label");
-            productBox.getChildren().addAll(imageView, nameLabel);
-            productBox.setOnMouseClicked(e -> {
-                productComboBox.getSelectionModel().select(product.getName());
-                updateImagePreview();
-            });
-            productGrid.getChildren().add(productBox);
+        if (selectedCategory == null) {
+            productGrid.setProducts(List.of());
+            return;
+        }
+
+        try (Metrics.Timing timing = Metrics.start(Metrics.Timer.GRID_REBUILD, selectedCategory)) {
+            // The catalog keeps each category's products presorted by name.
+            // The grid only builds tiles for the visible rows and reuses them for the rest.
+            productGrid.setProducts(catalog.getProducts(selectedCategory));
+
+            // Updates product dropdown
+            productComboBox.setItems(FXCollections.observableList(catalog.getProductNames(selectedCategory)));
+            productComboBox.getSelectionModel().selectFirst();
+            updateImagePreview();
         }
-        updateImagePreview();
     }
 
 
     // Updates the image preview based on the selected product in the product dropdown
     @FXML
     private void updateImagePreview() {
-        String selectedProduct = productComboBox.getSelectionModel().getSelectedItem();
-        if (selectedProduct != null) {
-            Product product = cartManager.getProductDatabase().get(selectedProduct);
-            try {
-                Image image = new Image(Objects.requireNonNull(getClass().getResourceAsStream(product.getImage())));
-                previewImage.setImage(image);
-            } catch (Exception e) {
-                System.err.println("Failed to load preview image: " + product.getImage());
-                previewImage.setImage(null);
-            }
+        Product product = selectedProduct();
+        if (product != null) {
+            ImageCache.load(previewImage, product.getImage(), ImageCache.Size.PREVIEW);
         } else {
-            previewImage.setImage(null);
+            ImageCache.load(previewImage, null, ImageCache.Size.PREVIEW);
         }
     }
 
 
+    // Returns the product selected in the dropdown, in the selected category, or null.
+    private Product selectedProduct() {
+        String category = categoryComboBox.getSelectionModel().getSelectedItem();
+        String name = productComboBox.getSelectionModel().getSelectedItem();
+        return category != null && name != null ? catalog.find(category, name) : null;
+    }
+
     // Adds the selected product and quantity to the cart,
     // Also updates the cart table and subtotal
     @FXML
     private void handleAddItem() {
         try {
-            String name = productComboBox.getSelectionModel().getSelectedItem();
+            Product product = selectedProduct();
+            if (product == null) {
+                showAlert("No Selection", "Please select a product to add.");
+                return;
+            }
             int quantity = Integer.parseInt(quantityField.getText().trim());
 
-            cartManager.addItem(name, quantity);
-            cartTable.setItems(FXCollections.observableArrayList(cartManager.getCartItems()));
+            checkoutService.addItem(sessionId, product.getSku(), quantity);
             updateSubtotal();
 
             quantityField.clear();
@@ -224,8 +395,7 @@ public class POSViewController {
     @FXML
     private void handleQuickEspresso() {
         try {
-            cartManager.addItem("Espresso", 1);
-            cartTable.setItems(FXCollections.observableArrayList(cartManager.getCartItems()));
+            checkoutService.addItem(sessionId, "Espresso", 1);
             updateSubtotal();
         } catch (IllegalArgumentException e) {
             showAlert("Error", e.getMessage());
@@ -238,8 +408,7 @@ public class POSViewController {
     private void handleRemoveItem() {
         int selectedIndex = cartTable.getSelectionModel().getSelectedIndex();
         if (selectedIndex >= 0) {
-            cartManager.removeItem(selectedIndex);
-            cartTable.setItems(FXCollections.observableArrayList(cartManager.getCartItems()));
+            checkoutService.removeItem(sessionId, selectedIndex);
             updateSubtotal();
         } else {
             showAlert("No Selection", "Please select an item to remove.");
@@ -250,8 +419,7 @@ public class POSViewController {
     // Updates the cart table and subtotal.
     @FXML
     private void handleClearCart() {
-        cartManager.clearCart();
-        cartTable.setItems(FXCollections.observableArrayList(cartManager.getCartItems()));
+        checkoutService.clearCart(sessionId);
         updateSubtotal();
     }
 
@@ -259,23 +427,25 @@ public class POSViewController {
     // Shows a message if no orders exists.
     @FXML
     private void handleOrderHistory() {
-        if (orderHistory.isEmpty()) {
+        OrderHistory history = checkoutService.getJournal().history();
+        if (history.isEmpty()) {
             showAlert("Order History", "No orders have been placed yet.");
             return;
         }
+        new OrderHistoryView(history, cartManager::renderBill, receiptSpooler != null ? this::printReceipt : null).showAndWait();
+    }
 
-        TextArea historyArea = new TextArea(String.join("\n\n", orderHistory));
-        historyArea.setEditable(false);
-        historyArea.setStyle("-fx-font-family: 'Monospaced'; -fx-font-size: 14;");
-        DialogPane dialogPane = new DialogPane();
-        dialogPane.setContent(historyArea);
-        dialogPane.setMinSize(400, 300);
-        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-        alert.setTitle("Order History");
-        alert.setHeaderText(null);
-        alert.setDialogPane(dialogPane);
-        alert.getButtonTypes().setAll(ButtonType.CLOSE);  // Add Close button
-        alert.showAndWait();
+    // Queues the order's receipt for printing; failures show a warning instead of blocking the till.
+    private void printReceipt(Order order) {
+        receiptSpooler.submit(order).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            Platform.runLater(() -> {
+                printerStatusLabel.setText("Receipt for order #" + order.orderNumber()
+                        + " not printed: " + cause.getMessage() + ". Reprint it from Order History.");
+                printerStatusLabel.setVisible(true);
+            });
+            return null;
+        });
     }
 
 
@@ -284,13 +454,25 @@ public class POSViewController {
     @FXML
     private void handleGenerateBill() {
         try {
-            double payment = Double.parseDouble(paymentField.getText().trim());
+            Money payment = Money.parse(paymentField.getText());
             double discountPercentage = getDiscountPercentage();
-            String bill = cartManager.generateBill(payment, discountPercentage);
+            CheckoutService.CheckoutResult result = checkoutService.checkout(sessionId, payment, discountPercentage);
+            Order order = result.order();
+            String bill = result.bill();
+
+            // The journal forces the order to disk in the background; the till does not wait for it.
+            result.saved().exceptionally(e -> {
+                Platform.runLater(() -> showAlert("Order Journal", "Order #" + order.orderNumber()
+                        + " could not be saved: " + e.getMessage()));
+                return null;
+            });
 
-            orderHistory.add(bill);
+            // The receipt is printed in the background; a slow or jammed printer only shows a warning.
+            if (receiptSpooler != null) {
+                printReceipt(order);
+            }
 
-            // Display the bill in a dialog
+            // Display the bill in a dialog that stays open while the cashier starts the next order
             TextArea billArea = new TextArea(bill);
             billArea.setEditable(false);
             billArea.setStyle("-fx-font-family: 'Monospaced'; -fx-font-size: 14;");
@@ -302,44 +484,88 @@ public class POSViewController {
             alert.setHeaderText(null);
             alert.setDialogPane(dialogPane);
             alert.getButtonTypes().setAll(ButtonType.CLOSE);  // Add Close button
-            alert.showAndWait();
+            alert.initModality(Modality.NONE);
+            alert.show();
 
-            cartTable.setItems(FXCollections.observableArrayList(cartManager.getCartItems()));
             updateSubtotal();
             paymentField.clear();
             discountField.clear();
-        } catch (NumberFormatException e) {
+        } catch (NumberFormatException | ArithmeticException e) {
+            // ArithmeticException: an amount too large to hold in cents.
             showAlert("Invalid Input", "Please enter a valid payment amount or discount percentage.");
         } catch (IllegalArgumentException e) {
             showAlert("Error", e.getMessage());
+        } catch (UncheckedIOException | IllegalStateException e) {
+            // The journal refused the order; the cart was kept, so the bill can be generated again.
+            showAlert("Order Journal", "The order could not be recorded: " + e.getMessage());
         }
     }
 
-    // Logs out the user and returns to the login view
+    // Shows the Z report for a day, today by default.
     @FXML
-    private void handleLogout() {
-        try {
-            Stage stage = (Stage) cartTable.getScene().getWindow();
-            FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource("/loginview.fxml"));
-            Scene scene = new Scene(fxmlLoader.load(), 300, 400);
-            scene.getStylesheets().add(Objects.requireNonNull(getClass().getResource("/styles.css")).toExternalForm());
-            stage.setTitle("Cafe POS Login");
-            stage.setScene(scene);
-        } catch (Exception e) {
-            showAlert("Error", "Failed to load login view: " + e.getMessage());
+    private void handleZReport() {
+        new ZReportView(checkoutService.getJournal().sales()).showAndWait();
+    }
+
+    // Opens the preparation stations' display in its own window.
+    @FXML
+    private void handleStations() {
+        if (checkoutService.getKitchen() == null) {
+            showAlert("Stations", "No preparation stations are set up on this till.");
+            return;
         }
+        new StationView(checkoutService.getKitchen()).show();
+    }
+
+    // Shows the live metrics, with buttons to save the flight recording and dump the metrics.
+    @FXML
+    private void handleDiagnostics() {
+        new DiagnosticsView().showAndWait();
     }
 
-    // Updates the subtoal and discounted labels based on the cart and discount.
-    // Fixed: Changed cartManager.getTotal() to cartManager.getSubtotal() to match CartManager method.
+    // Parks the cashier's cart and returns to the login view for the next cashier.
+    @FXML
+    private void handleSwitchCashier() {
+        parkSession();
+        SceneManager.shared().showLogin();
+    }
+
+    // Logs out the user, discarding their cart, and returns to the login view
+    @FXML
+    private void handleLogout() {
+        endSession();
+        // Both screens are kept, so this only swaps the scene back.
+        SceneManager.shared().showLogin();
+    }
+
+    // Updates the subtoal and discounted labels from the cart's running totals.
     private void updateSubtotal() {
-        double subtotal = cartManager.getTotal();
-        subtotalLabel.setText("Subtotal: $" + df.format(subtotal));
+        try (Metrics.Timing timing = Metrics.start(Metrics.Timer.SUBTOTAL_REFRESH)) {
+            subtotalLabel.setText("Subtotal: $" + cartManager.getTotal());
+            discountedTotalLabel.setText("Total After Discount: $" + cartManager.getDiscountedTotal());
+            promotionsLabel.setText(formatPromotions(cartManager.getPromotions()));
+        }
+    }
 
+    // Lists the applied promotions, e.g. "Promotions: Coffee + pastry combo -$1.25".
+    private static String formatPromotions(List<Order.Promotion> promotions) {
+        if (promotions.isEmpty()) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder("Promotions:");
+        for (Order.Promotion promotion : promotions) {
+            text.append(' ').append(promotion.name()).append(" -$").append(promotion.discount()).append(';');
+        }
+        text.setLength(text.length() - 1);
+        return text.toString();
+    }
+
+    // Applies the discount field to the cart, ignoring percentages outside 0-100, and refreshes the totals.
+    private void applyDiscount() {
         double discountPercentage = getDiscountPercentage();
-        double discountAmount = subtotal * (discountPercentage / 100);
-        double discountedTotal = subtotal - discountAmount;
-        discountedTotalLabel.setText("Total After Discount: $" + df.format(discountedTotal));
+        checkoutService.setDiscountPercentage(sessionId,
+                discountPercentage >= 0 && discountPercentage <= 100 ? discountPercentage : 0);
+        updateSubtotal();
     }
 
     // Retrieves the discount % from the discount field and
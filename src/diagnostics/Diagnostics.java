@@ -0,0 +1,121 @@
+/**
+ * Diagnostics runs the always-on parts of the instrumentation: a continuous Flight Recorder recording
+ * kept in memory for the last few minutes, and a periodic metrics dump to the data directory.
+ *
+ * When a till is reported slow, save the recording from the Diagnostics panel (or with
+ * "jcmd <pid> JFR.dump name=cafe-pos") and open it in JDK Mission Control; the "Cafe POS" events
+ * show which stage took the time. Metrics dumps are appended to diagnostics/metrics.log.
+ *
+ *   -Dcafepos.jfr=false                   no continuous recording
+ *   -Dcafepos.metrics.interval=<seconds>  dump interval, default 60; 0 disables the dump
+ */
+
+package diagnostics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import storage.DataDirectory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public final class Diagnostics {
+    public static final String RECORDING_NAME = "cafe-pos";
+
+    // The metrics log is rolled over to metrics.log.1 once it grows past this size.
+    private static final long MAX_LOG_BYTES = 10L * 1024 * 1024;
+    private static final Duration RECORDING_MAX_AGE = Duration.ofMinutes(15);
+    private static final DateTimeFormatter FILE_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static Recording recording;
+    private static ScheduledExecutorService dumper;
+
+    private Diagnostics() {
+    }
+
+    // Starts the continuous recording and the periodic metrics dump, as configured. Safe to call more than once.
+    public static synchronized void start() {
+        if (recording == null && Boolean.parseBoolean(System.getProperty("cafepos.jfr", "true"))) {
+            try {
+                recording = new Recording(Configuration.getConfiguration("default"));
+                recording.setName(RECORDING_NAME);
+                recording.setMaxAge(RECORDING_MAX_AGE);
+                recording.setToDisk(true);
+                recording.enable(StageEvent.class);
+                recording.start();
+            } catch (IOException | ParseException | IllegalStateException | SecurityException e) {
+                System.err.println("Failed to start flight recording: " + e.getMessage());
+                recording = null;
+            }
+        }
+        long interval = Long.getLong("cafepos.metrics.interval", 60);
+        if (dumper == null && interval > 0) {
+            dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumper.scheduleAtFixedRate(Diagnostics::dumpQuietly, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    // Writes a final metrics dump and stops the recording.
+    public static synchronized void stop() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+            dumpQuietly();
+        }
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    public static synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    // Saves the last few minutes of the continuous recording to the data directory and returns the file.
+    public static synchronized Path saveRecording() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("Flight recording is not running");
+        }
+        Path file = directory().resolve("cafe-pos-" + LocalDateTime.now().format(FILE_TIMESTAMP_FORMAT) + ".jfr");
+        recording.dump(file);
+        return file;
+    }
+
+    // Appends the current metrics to diagnostics/metrics.log.
+    public static void dumpMetrics() throws IOException {
+        Path log = directory().resolve("metrics.log");
+        if (Files.exists(log) && Files.size(log) > MAX_LOG_BYTES) {
+            Files.move(log, log.resolveSibling("metrics.log.1"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.writeString(log, Metrics.format() + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public static Path directory() {
+        return DataDirectory.resolve("diagnostics");
+    }
+
+    private static void dumpQuietly() {
+        try {
+            dumpMetrics();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to write metrics: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Metrics keeps process-wide counters and timers for the POS hot paths. Every timed stage is also
+ * emitted as a StageEvent, so a Flight Recorder recording shows the same stages on a timeline.
+ *
+ * Recording is lock-free (adders and atomics), so instrumented code on the FX thread and on checkout
+ * threads never waits on the metrics. Percentiles come from power-of-two buckets and are upper bounds.
+ */
+
+package diagnostics;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class Metrics {
+    public enum Timer {
+        STARTUP_LOGIN("Startup to login"),
+        STARTUP_TILL("Startup to till"),
+        POS_PRELOAD("POS preload"),
+        SCENE_SWITCH("Scene switch"),
+        LOGIN_VERIFY("Login verify"),
+        CATALOG_LOAD("Catalog load"),
+        IMAGE_DECODE("Image decode"),
+        GRID_REBUILD("Grid rebuild"),
+        ADD_ITEM("Add item"),
+        SUBTOTAL_REFRESH("Subtotal refresh"),
+        BILL("Bill"),
+        JOURNAL_WRITE("Journal write"),
+        RECEIPT_PRINT("Receipt print"),
+        SYNC_SEND("HQ sync send"),
+        KITCHEN_DISPATCH("Kitchen dispatch"),
+        KITCHEN_WAIT("Kitchen wait"),
+        Z_REPORT("Z report");
+
+        private final String label;
+        private final TimerStats stats = new TimerStats();
+
+        Timer(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public enum Counter {
+        ORDERS("Orders"),
+        ITEMS_ADDED("Items added"),
+        ADD_ITEM_REJECTED("Add item rejected"),
+        IMAGE_CACHE_HITS("Image cache hits"),
+        IMAGE_CACHE_MISSES("Image cache misses"),
+        IMAGE_ERRORS("Image errors"),
+        RECEIPTS_PRINTED("Receipts printed"),
+        RECEIPTS_REJECTED("Receipts rejected"),
+        RECEIPTS_FAILED("Receipts failed"),
+        CATALOG_RELOADS("Catalog reloads"),
+        CATALOG_RELOAD_FAILURES("Reload failures"),
+        SYNC_BATCHES_SENT("HQ batches sent"),
+        SYNC_BATCHES_FAILED("HQ batches failed"),
+        SYNC_ORDERS_DEFERRED("HQ orders deferred"),
+        KITCHEN_ORDERS("Kitchen orders"),
+        KITCHEN_OVERFLOWS("Kitchen overflows"),
+        KITCHEN_BUMPS("Kitchen bumps");
+
+        private final String label;
+        private final LongAdder count = new LongAdder();
+
+        Counter(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // A point-in-time view of one timer. Times are in nanoseconds.
+    public record TimerSnapshot(Timer timer, long count, long totalNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+        public long meanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+    }
+
+    // An in-progress measurement; closing it records the time, on any thread.
+    public static final class Timing implements AutoCloseable {
+        private final Timer timer;
+        private final long start;
+        private final StageEvent event;
+
+        private Timing(Timer timer, String detail) {
+            this.timer = timer;
+            this.start = System.nanoTime();
+            StageEvent stageEvent = new StageEvent();
+            if (stageEvent.isEnabled()) {
+                stageEvent.stage = timer.label;
+                stageEvent.detail = detail;
+                stageEvent.begin();
+                this.event = stageEvent;
+            } else {
+                this.event = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            timer.stats.record(System.nanoTime() - start);
+            if (event != null) {
+                event.commit();
+            }
+        }
+    }
+
+    // Durations bucketed by bit length, so bucket i holds durations below 2^i nanoseconds.
+    private static final class TimerStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray buckets = new AtomicLongArray(64);
+
+        void record(long nanos) {
+            long duration = Math.max(0, nanos);
+            count.increment();
+            totalNanos.add(duration);
+            maxNanos.accumulateAndGet(duration, Math::max);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(duration));
+        }
+
+        long percentile(double percentile, long total) {
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return i == 0 ? 0 : Math.min(1L << i, maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+    }
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private Metrics() {
+    }
+
+    // Starts timing a stage; use with try-with-resources, or close it when an asynchronous stage completes.
+    public static Timing start(Timer timer) {
+        return new Timing(timer, null);
+    }
+
+    public static Timing start(Timer timer, String detail) {
+        return new Timing(timer, detail);
+    }
+
+    // Records a duration measured some other way, e.g. from the process start time.
+    public static void record(Timer timer, long nanos) {
+        timer.stats.record(nanos);
+    }
+
+    public static void increment(Counter counter) {
+        counter.count.increment();
+    }
+
+    public static void add(Counter counter, long amount) {
+        counter.count.add(amount);
+    }
+
+    public static long get(Counter counter) {
+        return counter.count.sum();
+    }
+
+    public static TimerSnapshot snapshot(Timer timer) {
+        TimerStats stats = timer.stats;
+        long count = stats.count.sum();
+        return new TimerSnapshot(timer, count, stats.totalNanos.sum(), stats.percentile(50, count),
+                stats.percentile(99, count), stats.maxNanos.get());
+    }
+
+    public static List<TimerSnapshot> timers() {
+        List<TimerSnapshot> snapshots = new ArrayList<>();
+        for (Timer timer : Timer.values()) {
+            snapshots.add(snapshot(timer));
+        }
+        return snapshots;
+    }
+
+    // Formats every timer and counter as a plain-text table, headed by the current time.
+    public static String format() {
+        StringBuilder out = new StringBuilder();
+        out.append("Metrics at ").append(LocalDateTime.now().format(TIMESTAMP_FORMAT)).append('\n');
+        out.append(String.format("%-18s %10s %10s %10s %10s %10s%n", "Timer", "Count", "Mean ms", "p50 ms", "p99 ms", "Max ms"));
+        for (TimerSnapshot timer : timers()) {
+            out.append(String.format("%-18s %10d %10.3f %10.3f %10.3f %10.3f%n", timer.timer().getLabel(), timer.count(),
+                    timer.meanNanos() / 1e6, timer.p50Nanos() / 1e6, timer.p99Nanos() / 1e6, timer.maxNanos() / 1e6));
+        }
+        out.append(String.format("%-18s %10s%n", "Counter", "Value"));
+        for (Counter counter : Counter.values()) {
+            out.append(String.format("%-18s %10d%n", counter.getLabel(), get(counter)));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// A Flight Recorder event for one timed stage of the POS flow, e.g. an add-item or a bill.
+// Its duration is the stage's duration; filter on "stage" to compare stages in JDK Mission Control.
+@Name("cafepos.Stage")
+@Label("POS Stage")
+@Category("Cafe POS")
+@Description("A timed stage of the POS flow")
+@StackTrace(false)
+public class StageEvent extends jdk.jfr.Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Detail")
+    @Description("What the stage worked on, e.g. a product name or image path")
+    String detail;
+}
@@ -0,0 +1,215 @@
+/**
+ * KitchenQueue hands paid orders to the preparation stations, once the journal has them on disk.
+ *
+ * Orders are published into a ring of preallocated slots. Publishing copies the order's lines into
+ * the next slot, tagging each line with its station, and then advances the cursor; nothing is
+ * allocated per order. Each station has one consumer thread that follows the cursor with its own
+ * sequence number and copies its lines onto its StationBoard. Every station therefore sees orders
+ * in the order they were paid, and a slow station holds up no one else.
+ *
+ * There is a single writer: publish() is synchronized, so orders checked out by several sessions are
+ * still written one at a time. On a till there is one checkout thread, so the lock is uncontended.
+ * If the slowest station is a whole ring behind, the order is not queued and publish() returns
+ * false; the order is still journaled and can be reprinted from the order history.
+ */
+
+package kitchen;
+
+import diagnostics.Metrics;
+import models.Order;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public final class KitchenQueue implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1024;
+    // Idle consumers check for new orders at least this often, besides being woken by publish().
+    private static final long IDLE_PARK_NANOS = 100_000_000;
+
+    private static KitchenQueue shared;
+
+    // One published order. Line arrays start big enough for most orders and only grow for larger ones.
+    static final class Slot {
+        long orderNumber;
+        String cashier;
+        long publishedNanos;
+        int lineCount;
+        // Bit i is set if station i has lines in this order.
+        int stationMask;
+        String[] names = new String[16];
+        int[] quantities = new int[16];
+        byte[] stations = new byte[16];
+
+        void ensureLines(int count) {
+            if (names.length < count) {
+                int length = Math.max(count, names.length * 2);
+                names = Arrays.copyOf(names, length);
+                quantities = Arrays.copyOf(quantities, length);
+                stations = Arrays.copyOf(stations, length);
+            }
+        }
+    }
+
+    private final class StationConsumer implements Runnable {
+        final Station station;
+        final StationBoard board;
+        // The last sequence this station has taken from the ring.
+        final AtomicLong sequence = new AtomicLong(-1);
+        final Thread thread;
+
+        StationConsumer(Station station) {
+            this.station = station;
+            this.board = new StationBoard(station);
+            this.thread = new Thread(this, "kitchen-" + station.name().toLowerCase().replace('_', '-'));
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            int bit = 1 << station.ordinal();
+            long next = sequence.get() + 1;
+            while (!closed) {
+                long available = cursor.get();
+                if (next > available) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                long now = System.nanoTime();
+                for (; next <= available; next++) {
+                    Slot slot = slots[(int) (next & mask)];
+                    if ((slot.stationMask & bit) != 0) {
+                        board.add(slot);
+                        Metrics.record(Metrics.Timer.KITCHEN_DISPATCH, now - slot.publishedNanos);
+                    }
+                }
+                // Frees the slots for the writer.
+                sequence.set(available);
+            }
+        }
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    // The last published sequence.
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final StationConsumer[] consumers;
+    private final Map<Station, StationConsumer> consumersByStation = new EnumMap<>(Station.class);
+    private volatile boolean closed;
+
+    // Writer state, guarded by this.
+    private long nextSequence;
+    // The slowest station's sequence when last looked up; it only moves forward.
+    private long gatingSequence = -1;
+
+    // Creates the queue with room for the given number of orders, rounded up to a power of two.
+    public KitchenQueue(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        mask = size - 1;
+        consumers = new StationConsumer[Station.values().length];
+        for (Station station : Station.values()) {
+            StationConsumer consumer = new StationConsumer(station);
+            consumers[station.ordinal()] = consumer;
+            consumersByStation.put(station, consumer);
+        }
+        for (StationConsumer consumer : consumers) {
+            consumer.thread.start();
+        }
+    }
+
+    // Returns the process-wide queue, starting its station consumers on first use.
+    public static synchronized KitchenQueue shared() {
+        if (shared == null) {
+            shared = new KitchenQueue(DEFAULT_CAPACITY);
+        }
+        return shared;
+    }
+
+    // Queues the order's lines for their stations. Returns false, queuing nothing, if the slowest station
+    // is a full ring behind; never waits.
+    public synchronized boolean publish(Order order) {
+        if (closed) {
+            return false;
+        }
+        long sequence = nextSequence;
+        long wrapPoint = sequence - slots.length;
+        if (wrapPoint > gatingSequence) {
+            gatingSequence = slowestSequence();
+            if (wrapPoint > gatingSequence) {
+                Metrics.increment(Metrics.Counter.KITCHEN_OVERFLOWS);
+                return false;
+            }
+        }
+
+        Slot slot = slots[(int) (sequence & mask)];
+        int lineCount = order.lines().size();
+        slot.ensureLines(lineCount);
+        int stationMask = 0;
+        for (int i = 0; i < lineCount; i++) {
+            Order.Line line = order.lines().get(i);
+            Station station = Station.forCategory(line.category());
+            slot.names[i] = line.name();
+            slot.quantities[i] = line.quantity();
+            slot.stations[i] = (byte) station.ordinal();
+            stationMask |= 1 << station.ordinal();
+        }
+        // Drops references to a longer order's lines that this slot last held.
+        if (slot.lineCount > lineCount) {
+            Arrays.fill(slot.names, lineCount, slot.lineCount, null);
+        }
+        slot.lineCount = lineCount;
+        slot.stationMask = stationMask;
+        slot.orderNumber = order.orderNumber();
+        slot.cashier = order.cashier();
+        slot.publishedNanos = System.nanoTime();
+
+        nextSequence = sequence + 1;
+        cursor.set(sequence);
+        for (StationConsumer consumer : consumers) {
+            if ((stationMask & 1 << consumer.station.ordinal()) != 0) {
+                LockSupport.unpark(consumer.thread);
+            }
+        }
+        Metrics.increment(Metrics.Counter.KITCHEN_ORDERS);
+        return true;
+    }
+
+    public StationBoard getBoard(Station station) {
+        return consumersByStation.get(station).board;
+    }
+
+    // Returns the number of published orders the station's consumer has not taken from the ring yet.
+    public long getLag(Station station) {
+        return cursor.get() - consumersByStation.get(station).sequence.get();
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    // Stops the station consumers. Tickets already on the boards stay there.
+    @Override
+    public void close() {
+        closed = true;
+        for (StationConsumer consumer : consumers) {
+            LockSupport.unpark(consumer.thread);
+        }
+    }
+
+    private long slowestSequence() {
+        long slowest = Long.MAX_VALUE;
+        for (StationConsumer consumer : consumers) {
+            slowest = Math.min(slowest, consumer.sequence.get());
+        }
+        return slowest;
+    }
+}
@@ -0,0 +1,40 @@
+package kitchen;
+
+import java.util.List;
+
+// A preparation station, and the product categories whose items are made there.
+// Items in a category no station lists go to the bakery, which also plates the food.
+public enum Station {
+    ESPRESSO_BAR("Espresso bar", List.of("Coffee")),
+    COLD_DRINKS("Cold drinks", List.of("Non coffee")),
+    BAKERY("Bakery", List.of("Dessert", "Food"));
+
+    // values() copies the array on every call, and routing runs for every order line.
+    private static final Station[] STATIONS = values();
+
+    private final String label;
+    private final List<String> categories;
+
+    Station(String label, List<String> categories) {
+        this.label = label;
+        this.categories = categories;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    // Returns the station that makes items in the category.
+    public static Station forCategory(String category) {
+        for (Station station : STATIONS) {
+            if (station.categories.contains(category)) {
+                return station;
+            }
+        }
+        return BAKERY;
+    }
+}
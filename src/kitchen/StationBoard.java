@@ -0,0 +1,131 @@
+/**
+ * StationBoard holds a station's open tickets, oldest first, until they are bumped as done.
+ *
+ * The station's consumer thread adds tickets and the station display bumps them. Ticket entries are
+ * preallocated and reused once bumped, so a rush adds no garbage; the pool only grows if more tickets
+ * than that are open at once. Displays poll getVersion() and only take a snapshot when it changes.
+ */
+
+package kitchen;
+
+import diagnostics.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+public final class StationBoard {
+    public static final int PREALLOCATED_TICKETS = 128;
+
+    // A reusable open ticket.
+    private static final class Entry {
+        long orderNumber;
+        String cashier;
+        long publishedNanos;
+        int lineCount;
+        String[] names = new String[8];
+        int[] quantities = new int[8];
+    }
+
+    private final Station station;
+    private final ArrayDeque<Entry> open = new ArrayDeque<>(PREALLOCATED_TICKETS);
+    private final ArrayDeque<Entry> free = new ArrayDeque<>(PREALLOCATED_TICKETS);
+    private volatile long version;
+
+    StationBoard(Station station) {
+        this.station = station;
+        for (int i = 0; i < PREALLOCATED_TICKETS; i++) {
+            free.push(new Entry());
+        }
+    }
+
+    public Station getStation() {
+        return station;
+    }
+
+    // Copies the station's lines from the slot into a new open ticket.
+    synchronized void add(KitchenQueue.Slot slot) {
+        Entry entry = free.isEmpty() ? new Entry() : free.pop();
+        int count = 0;
+        for (int i = 0; i < slot.lineCount; i++) {
+            if (slot.stations[i] == station.ordinal()) {
+                if (count == entry.names.length) {
+                    entry.names = Arrays.copyOf(entry.names, count * 2);
+                    entry.quantities = Arrays.copyOf(entry.quantities, count * 2);
+                }
+                entry.names[count] = slot.names[i];
+                entry.quantities[count] = slot.quantities[i];
+                count++;
+            }
+        }
+        entry.lineCount = count;
+        entry.orderNumber = slot.orderNumber;
+        entry.cashier = slot.cashier;
+        entry.publishedNanos = slot.publishedNanos;
+        open.addLast(entry);
+        version++;
+    }
+
+    // Marks the order's ticket as done. Returns false if the station has no open ticket for it.
+    public synchronized boolean bump(long orderNumber) {
+        for (Iterator<Entry> iterator = open.iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+            if (entry.orderNumber == orderNumber) {
+                iterator.remove();
+                complete(entry);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Marks the oldest open ticket as done. Returns false if there is none.
+    public synchronized boolean bumpOldest() {
+        Entry entry = open.pollFirst();
+        if (entry == null) {
+            return false;
+        }
+        complete(entry);
+        return true;
+    }
+
+    // Returns the open tickets, oldest first.
+    public synchronized List<Ticket> snapshot() {
+        long now = System.nanoTime();
+        List<Ticket> tickets = new ArrayList<>(open.size());
+        for (Entry entry : open) {
+            List<Ticket.Line> lines = new ArrayList<>(entry.lineCount);
+            for (int i = 0; i < entry.lineCount; i++) {
+                lines.add(new Ticket.Line(entry.names[i], entry.quantities[i]));
+            }
+            tickets.add(new Ticket(entry.orderNumber, entry.cashier, (now - entry.publishedNanos) / 1_000_000, lines));
+        }
+        return tickets;
+    }
+
+    public synchronized int getOpenCount() {
+        return open.size();
+    }
+
+    // Returns how long the oldest open ticket has been waiting, in milliseconds, or 0 if none is open.
+    public synchronized long getOldestWaitMillis() {
+        Entry oldest = open.peekFirst();
+        return oldest == null ? 0 : (System.nanoTime() - oldest.publishedNanos) / 1_000_000;
+    }
+
+    // Changes whenever a ticket is added or bumped.
+    public long getVersion() {
+        return version;
+    }
+
+    private void complete(Entry entry) {
+        Metrics.record(Metrics.Timer.KITCHEN_WAIT, System.nanoTime() - entry.publishedNanos);
+        Metrics.increment(Metrics.Counter.KITCHEN_BUMPS);
+        Arrays.fill(entry.names, 0, entry.lineCount, null);
+        entry.cashier = null;
+        free.push(entry);
+        version++;
+    }
+}
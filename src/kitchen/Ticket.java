@@ -0,0 +1,9 @@
+package kitchen;
+
+import java.util.List;
+
+// A station's part of one order, as shown on its display: only the lines made at that station.
+public record Ticket(long orderNumber, String cashier, long waitingMillis, List<Line> lines) {
+    public record Line(String name, int quantity) {
+    }
+}
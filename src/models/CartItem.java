@@ -1,51 +1,57 @@
 package models;
 
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+
 public class CartItem {
-    private String name;
-    private int quantity;
-    private double price;
-    private String image;
+    // The catalog version of the product when it was rung up, kept in case the catalog changes
+    // while the cart is open: the line keeps its price, image and category.
+    private final Product product;
+    // Observable so the cart table can refresh a single row when the quantity changes.
+    private final IntegerProperty quantity = new SimpleIntegerProperty();
 
-    public CartItem(String name, int quantity, double price, String image) {
-        this.name = name;
-        this.quantity = quantity;
-        this.price = price;
-        this.image = image;
+    public CartItem(Product product, int quantity) {
+        this.product = product;
+        this.quantity.set(quantity);
     }
 
-    public String getName() {
-        return name;
+    public Product getProduct() {
+        return product;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    public int getSku() {
+        return product.getSku();
+    }
+
+    public String getName() {
+        return product.getName();
     }
 
     public int getQuantity() {
-        return quantity;
+        return quantity.get();
     }
 
     public void setQuantity(int quantity) {
-        this.quantity = quantity;
+        this.quantity.set(quantity);
     }
 
-    public double getPrice() {
-        return price;
+    public IntegerProperty quantityProperty() {
+        return quantity;
     }
 
-    public void setPrice(double price) {
-        this.price = price;
+    public Money getPrice() {
+        return product.getPrice();
     }
 
     public String getImage() {
-        return image;
+        return product.getImage();
     }
 
-    public void setImage(String image) {
-        this.image = image;
+    public String getCategory() {
+        return product.getCategory();
     }
 
-    public double getTotal() {
-        return quantity * price;
+    public Money getTotal() {
+        return getPrice().times(getQuantity());
     }
-}
\ No newline at end of file
+}
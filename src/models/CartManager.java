@@ -1,62 +1,198 @@
 /**
- * CartManager manages the cart for the Cafe POS System, including product loading, cart operations, and bill generation.
+ * CartManager manages the cart for the Cafe POS System, including product lookup, cart operations, and bill generation.
+ * Products are looked up in the current catalog version as they are added; lines keep the price they were rung up at.
  */
 
 package models;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import java.io.InputStream;
-import java.text.DecimalFormat;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+import pricing.PricingSession;
+
 import java.util.*;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 public class CartManager {
-    private final List<CartItem> cartItems;
-    private final Map<String, Product> productDatabase;
-    private static final DecimalFormat df = new DecimalFormat("#.00");
+    // The cart lines. A quantity change is reported as an update of just that line, by index, so views
+    // refresh one row without the list scanning every line to find it (as an extractor would).
+    private static final class CartLines extends ObservableListBase<CartItem> {
+        private final List<CartItem> lines = new ArrayList<>();
 
-    // Initializes an empty cart and loads the products into the product database.
-    public CartManager() {
-        cartItems = new ArrayList<>();
-        productDatabase = new HashMap<>();
-        loadProducts();
-    }
-
-    // Loads products from the JSON file into the product database.
-    // This also throws a run time exception if loading fails.
-    private void loadProducts() {
-        try {
-            // Configure ObjectMapper to ignore unknown properties in the JSON.
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-            InputStream inputStream = getClass().getResourceAsStream("/products.json");
-            if (inputStream == null) {
-                throw new IllegalStateException("products.json not found");
+        @Override
+        public CartItem get(int index) {
+            return lines.get(index);
+        }
+
+        @Override
+        public int size() {
+            return lines.size();
+        }
+
+        @Override
+        public boolean add(CartItem line) {
+            beginChange();
+            try {
+                lines.add(line);
+                nextAdd(lines.size() - 1, lines.size());
+            } finally {
+                endChange();
+            }
+            return true;
+        }
+
+        @Override
+        public CartItem remove(int index) {
+            beginChange();
+            try {
+                CartItem line = lines.remove(index);
+                nextRemove(index, line);
+                return line;
+            } finally {
+                endChange();
+            }
+        }
+
+        @Override
+        public void clear() {
+            if (lines.isEmpty()) {
+                return;
+            }
+            beginChange();
+            try {
+                List<CartItem> removed = new ArrayList<>(lines);
+                lines.clear();
+                nextRemove(0, removed);
+            } finally {
+                endChange();
             }
-            Product[] products = mapper.readValue(inputStream, Product[].class);
-            for (Product product : products) {
-                productDatabase.put(product.getName(), product);
+        }
+
+        void updated(int index) {
+            beginChange();
+            try {
+                nextUpdate(index);
+            } finally {
+                endChange();
             }
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load products: " + e.getMessage(), e);
         }
     }
 
-    // Returns a copy of the product database.
-    // @return A new HashMap containing all products.
-    public Map<String, Product> getProductDatabase() {
-        return new HashMap<>(productDatabase);
+    private final CartLines cartItems;
+    private final ObservableList<CartItem> readOnlyCartItems;
+    private final Supplier<Catalog> catalog;
+    private final Inventory inventory;
+    // Cart lines indexed by SKU, so repeated products merge into one line without hashing their names.
+    // Grown to the catalog's SKU limit as needed. positionBySku holds each line's index in cartItems.
+    private CartItem[] lineBySku;
+    private int[] positionBySku;
+    // Running aggregates, kept up to date on every cart change so totals cost the same for any cart size.
+    private long subtotalCents;
+    private int itemCount;
+    private long discountBasisPoints;
+    // Promotions for this cart, re-evaluated only for the rules a change affects.
+    // Compiled for the catalog version current when the order was started.
+    private PricingSession pricing;
+    private Catalog pricingCatalog;
+    private final ReceiptRenderer receiptRenderer = new ReceiptRenderer();
+
+    // Initializes an empty cart backed by the shared product catalog, following its new versions, and inventory.
+    public CartManager() {
+        this(Catalog::shared, Inventory.shared());
+    }
+
+    // Initializes an empty cart backed by the given product catalog and inventory.
+    public CartManager(Catalog catalog, Inventory inventory) {
+        this(() -> catalog, inventory);
+    }
+
+    // Initializes an empty cart that looks products up in whichever catalog the supplier returns.
+    public CartManager(Supplier<Catalog> catalog, Inventory inventory) {
+        this.catalog = catalog;
+        this.inventory = inventory;
+        cartItems = new CartLines();
+        readOnlyCartItems = FXCollections.unmodifiableObservableList(cartItems);
+        pricingCatalog = catalog.get();
+        lineBySku = new CartItem[pricingCatalog.getSkuLimit()];
+        positionBySku = new int[lineBySku.length];
+        pricing = pricingCatalog.getPricingRules().newSession();
+    }
+
+    // Returns the current catalog version.
+    public Catalog getCatalog() {
+        return catalog.get();
+    }
+
+    public Inventory getInventory() {
+        return inventory;
     }
 
     // Add an item to the cart with the specified name and quantity.
+    // If several categories have a product with that name, the first category's is added.
     public void addItem(String name, int quantity) throws IllegalArgumentException {
-        if (!productDatabase.containsKey(name)) {
+        Product product = catalog.get().find(name);
+        if (product == null) {
             throw new IllegalArgumentException("Item not found in product database: " + name);
         }
+        addProduct(product, quantity);
+    }
+
+    // Add the product with the specified SKU to the cart.
+    public void addItem(int sku, int quantity) throws IllegalArgumentException {
+        Product product = catalog.get().get(sku);
+        if (product == null) {
+            throw new IllegalArgumentException("Item not found in product database: SKU " + sku);
+        }
+        addProduct(product, quantity);
+    }
+
+    // If the product is already in the cart, its line quantity is increased instead of adding a new line,
+    // at the line's price even if the catalog price has changed since.
+    private void addProduct(Product product, int quantity) {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be greater than 0");
         }
-        Product product = productDatabase.get(name);
-        cartItems.add(new CartItem(name, quantity, product.getPrice(), product.getImage()));
+        int sku = product.getSku();
+        reserve(product, quantity);
+        if (sku >= lineBySku.length) {
+            lineBySku = Arrays.copyOf(lineBySku, Math.max(sku + 1, catalog.get().getSkuLimit()));
+            positionBySku = Arrays.copyOf(positionBySku, lineBySku.length);
+        }
+        CartItem line = lineBySku[sku];
+        if (line != null) {
+            line.setQuantity(line.getQuantity() + quantity);
+            cartItems.updated(positionBySku[sku]);
+        } else {
+            line = new CartItem(product, quantity);
+            lineBySku[sku] = line;
+            positionBySku[sku] = cartItems.size();
+            cartItems.add(line);
+        }
+        subtotalCents += quantity * line.getPrice().cents();
+        itemCount += quantity;
+        pricing.setLine(sku, line.getQuantity(), line.getPrice().cents());
+    }
+
+    // Changes the quantity of the cart line at the specified index.
+    public void updateQuantity(int index, int quantity) {
+        if (index < 0 || index >= cartItems.size()) {
+            throw new IllegalArgumentException("Invalid item index: " + index);
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than 0");
+        }
+        CartItem line = cartItems.get(index);
+        int delta = quantity - line.getQuantity();
+        if (delta > 0) {
+            reserve(line.getProduct(), delta);
+        } else {
+            inventory.release(line.getSku(), -delta);
+        }
+        line.setQuantity(quantity);
+        cartItems.updated(index);
+        subtotalCents += delta * line.getPrice().cents();
+        itemCount += delta;
+        pricing.setLine(line.getSku(), quantity, line.getPrice().cents());
     }
 
     // Remove an item from the cart at the specified index.
@@ -64,65 +200,166 @@ public class CartManager {
         if (index < 0 || index >= cartItems.size()) {
             throw new IllegalArgumentException("Invalid item index: " + index);
         }
-        cartItems.remove(index);
+        CartItem line = cartItems.remove(index);
+        lineBySku[line.getSku()] = null;
+        // Lines after the removed one move up; removal is rare next to adds, which stay O(1).
+        for (int i = index; i < cartItems.size(); i++) {
+            positionBySku[cartItems.get(i).getSku()] = i;
+        }
+        inventory.release(line.getSku(), line.getQuantity());
+        subtotalCents -= line.getTotal().cents();
+        itemCount -= line.getQuantity();
+        pricing.setLine(line.getSku(), 0, line.getPrice().cents());
     }
 
-    // Clear all items from the cart.
+    // Clear all items from the cart, returning their reserved stock.
     public void clearCart() {
-        cartItems.clear();
+        for (CartItem line : cartItems) {
+            inventory.release(line.getSku(), line.getQuantity());
+        }
+        resetCart();
     }
 
-    // Calculates the total cost of all items in the cart.
-    public double getTotal() {
-        return cartItems.stream().mapToDouble(CartItem::getTotal).sum();
+    private void resetCart() {
+        for (CartItem line : cartItems) {
+            lineBySku[line.getSku()] = null;
+        }
+        cartItems.clear();
+        subtotalCents = 0;
+        itemCount = 0;
+        // The next order is priced with the promotions of the catalog current when it starts.
+        Catalog current = catalog.get();
+        if (current != pricingCatalog) {
+            pricingCatalog = current;
+            pricing = current.getPricingRules().newSession();
+        } else {
+            pricing.clear();
+        }
     }
 
-    // This generates a bill for the current cart, applying the specified discount and processing the payment.
-    // Also clears the cart after generating a bill.
-    public String generateBill(double payment, double discountPercentage) {
-        if (cartItems.isEmpty()) {
-            throw new IllegalArgumentException("Cart is empty");
+    // Reserves stock for the cart, failing with the remaining quantity if there is not enough.
+    private void reserve(Product product, int quantity) {
+        if (!inventory.reserve(product.getSku(), quantity)) {
+            throw new IllegalArgumentException("Only " + inventory.getAvailable(product.getSku()) + " "
+                    + product.getName() + " left in stock");
         }
+    }
+
+    // Returns the subtotal of all items in the cart.
+    public Money getTotal() {
+        return Money.ofCents(subtotalCents);
+    }
+
+    // Returns the number of units in the cart, across all lines.
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    // Returns the promotions that currently apply to the cart.
+    public List<Order.Promotion> getPromotions() {
+        return pricing.promotions(System.currentTimeMillis());
+    }
+
+    // Returns the total taken off by promotions right now.
+    public Money getPromotionDiscount() {
+        return Money.ofCents(promotionCents(System.currentTimeMillis()));
+    }
+
+    // Promotions never take the subtotal below zero.
+    private long promotionCents(long now) {
+        return Math.min(subtotalCents, pricing.discountCents(now));
+    }
+
+    // Sets the discount percentage applied to the cart subtotal after promotions.
+    // The percentage is kept in basis points, so 12.5% is applied exactly.
+    public void setDiscountPercentage(double discountPercentage) {
         if (discountPercentage < 0 || discountPercentage > 100) {
             throw new IllegalArgumentException("Discount percentage must be between 0 and 100");
         }
+        this.discountBasisPoints = Money.toBasisPoints(discountPercentage);
+    }
 
-        // Calculates the subtotal, discoun, and final total.
-        double subtotal = getTotal();
-        double discountAmount = subtotal * (discountPercentage / 100);
-        double finalTotal = subtotal - discountAmount;
+    public double getDiscountPercentage() {
+        return discountBasisPoints / 100.0;
+    }
 
-        if (payment < finalTotal) {
-            throw new IllegalArgumentException("Payment must be at least $" + df.format(finalTotal));
+    // Returns the percentage discount on the subtotal after promotions, rounded half-up to the cent.
+    public Money getDiscountAmount() {
+        return Money.ofCents(discountCents(subtotalCents - promotionCents(System.currentTimeMillis())));
+    }
+
+    // Returns the subtotal after promotions and the discount have been applied.
+    public Money getDiscountedTotal() {
+        long afterPromotions = subtotalCents - promotionCents(System.currentTimeMillis());
+        return Money.ofCents(afterPromotions - discountCents(afterPromotions));
+    }
+
+    private long discountCents(long amountCents) {
+        return Money.percentageOf(amountCents, discountBasisPoints);
+    }
+
+    // Checks out the current cart, applying the specified discount and processing the payment.
+    // Returns the completed order and clears the cart.
+    public Order checkout(long orderNumber, String cashier, Money payment, double discountPercentage) {
+        Order order = prepareOrder(() -> orderNumber, cashier, payment, discountPercentage);
+        completeOrder();
+        return order;
+    }
+
+    // Prices the cart and builds its order without selling anything, so the order can be recorded
+    // before the cart is cleared. The order number is only taken once the cart and payment are accepted.
+    // Throws IllegalArgumentException if the cart is empty or the payment does not cover the total.
+    public Order prepareOrder(LongSupplier orderNumber, String cashier, Money payment, double discountPercentage) {
+        if (cartItems.isEmpty()) {
+            throw new IllegalArgumentException("Cart is empty");
         }
+        setDiscountPercentage(discountPercentage);
+
+        // Reads the subtotal, promotions, discount, and final total from the running aggregates,
+        // pricing promotions at the time the order is placed.
+        long now = System.currentTimeMillis();
+        List<Order.Promotion> promotions = pricing.promotions(now);
+        long afterPromotions = subtotalCents - promotionCents(now);
+        Money subtotal = getTotal();
+        Money discountAmount = Money.ofCents(discountCents(afterPromotions));
+        Money finalTotal = Money.ofCents(afterPromotions - discountAmount.cents());
 
-        // Builds the bill string with formatted details
-        StringBuilder bill = new StringBuilder();
-        bill.append("               ===== Cafe POS Bill =====\n");
-        bill.append(String.format("%-20s %-10s %-10s %-10s\n", "Item", "Qty", "Price", "Total"));
-        bill.append("------------------------------------------------\n");
+        if (payment.compareTo(finalTotal) < 0) {
+            throw new IllegalArgumentException("Payment must be at least $" + finalTotal);
+        }
+
+        List<Order.Line> lines = new ArrayList<>(cartItems.size());
         for (CartItem item : cartItems) {
-            bill.append(String.format("%-20s %-10d $%-9.2f $%-9.2f\n",
-                    item.getName(), item.getQuantity(), item.getPrice(), item.getTotal()));
+            lines.add(new Order.Line(item.getName(), item.getCategory(), item.getQuantity(), item.getPrice()));
         }
-        bill.append("------------------------------------------------\n");
-        bill.append(String.format("%-20s $%-9.2f\n", "Subtotal:", subtotal));
-        if (discountPercentage > 0) {
-            bill.append(String.format("%-20s %-9.2f%%\n", "Discount:", discountPercentage));
-            bill.append(String.format("%-20s $%-9.2f\n", "Discount Amount:", discountAmount));
+        return new Order(orderNumber.getAsLong(), now, cashier, lines, subtotal, discountBasisPoints,
+                discountAmount, finalTotal, payment, payment.minus(finalTotal), promotions);
+    }
+
+    // Sells the cart's reserved stock and clears the cart, once its prepared order has been recorded.
+    public void completeOrder() {
+        for (CartItem item : cartItems) {
+            inventory.commit(item.getSku(), item.getQuantity());
         }
-        bill.append(String.format("%-20s $%-9.2f\n", "Final Total:", finalTotal));
-        bill.append(String.format("%-20s $%-9.2f\n", "Payment:", payment));
-        bill.append(String.format("%-20s $%-9.2f\n", "Change:", payment - finalTotal));
-        bill.append("================================================");
+        // Clear the cart; its stock has been sold rather than released.
+        resetCart();
+        discountBasisPoints = 0;
+    }
+
+    // This generates a bill for the current cart, applying the specified discount and processing the payment.
+    // Also clears the cart after generating a bill.
+    public String generateBill(Money payment, double discountPercentage) {
+        return renderBill(checkout(0, null, payment, discountPercentage));
+    }
 
-        // Clear the cart
-        clearCart();
-        return bill.toString();
+    // Renders the bill text for a completed order.
+    public String renderBill(Order order) {
+        return receiptRenderer.render(order);
     }
 
-    // Returns a copy of the current cart items.
-    public List<CartItem> getCartItems() {
-        return new ArrayList<>(cartItems);
+    // Returns a live, read-only view of the cart items.
+    // Listeners receive fine-grained add, update and remove changes as the cart is modified.
+    public ObservableList<CartItem> getCartItems() {
+        return readOnlyCartItems;
     }
 }
\ No newline at end of file
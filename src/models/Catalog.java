@@ -0,0 +1,227 @@
+/**
+ * Catalog is one immutable version of the product catalog, shared by every cart.
+ * Category lists are precomputed and sorted at load time, so the product grid and dropdowns
+ * never have to filter or sort the catalog on a UI event.
+ *
+ * A product is identified by its category and name, so two categories can each have a product with
+ * the same display name. Each product is also given a dense int SKU the first time it appears. The
+ * SKU stays the same in every later catalog version for the life of the process. Carts, stock and
+ * pricing keep SKUs in arrays indexed by SKU, so their hot paths never hash a product name.
+ *
+ * The process-wide catalog can be replaced while the till is running (see storage.CatalogWatcher):
+ * a new version is built and validated on the side and then published in one atomic swap. Readers
+ * never lock; they see either the old version or the new one, never a mix.
+ */
+
+package models;
+
+import pricing.PricingRules;
+import storage.CatalogLoader;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class Catalog {
+    // Told about each newly published catalog, on the thread that published it.
+    public interface ChangeListener {
+        void catalogChanged(Catalog previous, Catalog current);
+    }
+
+    private static final AtomicReference<Catalog> shared = new AtomicReference<>();
+    private static final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private static final AtomicLong versions = new AtomicLong();
+    // SKUs by category and name, across every catalog version.
+    private static final Map<String, Integer> skus = new HashMap<>();
+
+    private final long version = versions.incrementAndGet();
+
+    // Indexed by SKU; null for SKUs this version does not have.
+    private final Product[] productsBySku;
+    private final List<Product> products;
+    // Products by name, in category order; more than one only if categories share the name.
+    private final Map<String, List<Product>> productsByName;
+    private final List<String> categories;
+    private final Map<String, List<Product>> productsByCategory;
+    private final Map<String, List<String>> productNamesByCategory;
+    private ProductSearchIndex searchIndex;
+    private PricingRules pricingRules;
+
+    // Builds a catalog from the given products, giving new ones SKUs.
+    // Later products replace earlier ones with the same category and name.
+    public Catalog(Collection<Product> products) {
+        TreeMap<Integer, Product> bySku = new TreeMap<>();
+        synchronized (skus) {
+            for (Product product : products) {
+                Integer sku = skus.get(identity(product));
+                if (sku == null) {
+                    sku = skus.size();
+                    skus.put(identity(product), sku);
+                }
+                product.setSku(sku);
+                bySku.put(sku, product);
+            }
+        }
+        Map<String, List<Product>> byCategory = new TreeMap<>();
+        for (Product product : bySku.values()) {
+            byCategory.computeIfAbsent(product.getCategory(), key -> new ArrayList<>()).add(product);
+        }
+        Map<String, List<Product>> sortedByCategory = new HashMap<>();
+        Map<String, List<String>> namesByCategory = new HashMap<>();
+        for (Map.Entry<String, List<Product>> entry : byCategory.entrySet()) {
+            List<Product> sorted = new ArrayList<>(entry.getValue());
+            sorted.sort(Comparator.comparing(Product::getName));
+            sortedByCategory.put(entry.getKey(), List.copyOf(sorted));
+            namesByCategory.put(entry.getKey(), sorted.stream().map(Product::getName).toList());
+        }
+        Map<String, List<Product>> byName = new HashMap<>();
+        for (List<Product> category : sortedByCategory.values()) {
+            for (Product product : category) {
+                byName.computeIfAbsent(product.getName(), key -> new ArrayList<>(1)).add(product);
+            }
+        }
+        byName.replaceAll((name, matches) -> {
+            matches.sort(Comparator.comparing(Product::getCategory));
+            return List.copyOf(matches);
+        });
+        this.productsBySku = new Product[bySku.isEmpty() ? 0 : bySku.lastKey() + 1];
+        bySku.forEach((sku, product) -> productsBySku[sku] = product);
+        this.products = List.copyOf(bySku.values());
+        this.productsByName = Collections.unmodifiableMap(byName);
+        this.categories = List.copyOf(byCategory.keySet());
+        this.productsByCategory = Collections.unmodifiableMap(sortedByCategory);
+        this.productNamesByCategory = Collections.unmodifiableMap(namesByCategory);
+    }
+
+    // Returns the current process-wide catalog, loading it on first use (see CatalogLoader.loadShared).
+    // After that this is a plain read, so the checkout path never waits on a reload.
+    public static Catalog shared() {
+        Catalog catalog = shared.get();
+        return catalog != null ? catalog : loadShared();
+    }
+
+    private static synchronized Catalog loadShared() {
+        if (shared.get() == null) {
+            shared.set(CatalogLoader.loadShared());
+        }
+        return shared.get();
+    }
+
+    // Makes the catalog the process-wide one and tells the listeners.
+    // Carts already holding products keep them at the prices they were rung up at.
+    public static void publish(Catalog catalog) {
+        Catalog previous = shared.getAndSet(Objects.requireNonNull(catalog));
+        for (ChangeListener listener : listeners) {
+            listener.catalogChanged(previous, catalog);
+        }
+    }
+
+    public static void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Numbers catalog versions in the order they were built, starting at 1.
+    public long getVersion() {
+        return version;
+    }
+
+    // Returns the product with the SKU, or null if this version does not have it.
+    public Product get(int sku) {
+        return sku >= 0 && sku < productsBySku.length ? productsBySku[sku] : null;
+    }
+
+    // Returns one more than the highest SKU in this version, the size for arrays indexed by SKU.
+    public int getSkuLimit() {
+        return productsBySku.length;
+    }
+
+    // Returns the product with the given name, or null if there is none.
+    // If categories share the name, returns the one in the first category; see find(category, name).
+    public Product find(String name) {
+        List<Product> matches = productsByName.get(name);
+        return matches != null ? matches.get(0) : null;
+    }
+
+    // Returns the product with the given name in the category, or null if there is none.
+    public Product find(String category, String name) {
+        List<Product> inCategory = productsByCategory.get(category);
+        if (inCategory == null) {
+            return null;
+        }
+        // Each category's products are sorted by name.
+        int low = 0;
+        int high = inCategory.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = inCategory.get(middle).getName().compareTo(name);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return inCategory.get(middle);
+            }
+        }
+        return null;
+    }
+
+    // Returns every product with the given name, in category order.
+    public List<Product> findAll(String name) {
+        return productsByName.getOrDefault(name, List.of());
+    }
+
+    // Returns every product, in SKU order.
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    // Returns the distinct categories, sorted.
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    // Returns the products in the category, sorted by name.
+    public List<Product> getProducts(String category) {
+        return productsByCategory.getOrDefault(category, List.of());
+    }
+
+    // Returns the names of the products in the category, sorted.
+    public List<String> getProductNames(String category) {
+        return productNamesByCategory.getOrDefault(category, List.of());
+    }
+
+    // Returns the type-ahead search index over this catalog, building it on first use.
+    public synchronized ProductSearchIndex getSearchIndex() {
+        if (searchIndex == null) {
+            searchIndex = new ProductSearchIndex(products);
+        }
+        return searchIndex;
+    }
+
+    // Returns the promotions in /pricing.json compiled against this catalog, compiling them on first use.
+    // A malformed rule file is reported and leaves the catalog without promotions rather than stopping the till.
+    public synchronized PricingRules getPricingRules() {
+        if (pricingRules == null) {
+            try {
+                pricingRules = PricingRules.compile(PricingRules.sharedDefinitions(), this);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to load pricing rules: " + e.getMessage());
+                pricingRules = PricingRules.NONE;
+            }
+        }
+        return pricingRules;
+    }
+
+    public int size() {
+        return products.size();
+    }
+
+    private static String identity(Product product) {
+        return product.getCategory() + '\u001f' + product.getName();
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Inventory tracks stock for every product that has an opening quantity in the catalog.
+ *
+ * Counters are kept by SKU in atomic int arrays, updated with compare-and-set, so checkout sessions
+ * selling the same popular item never wait on a shared lock and a lookup never hashes a name.
+ * Adding to a cart reserves stock, removing or clearing releases it, and checkout commits it as sold.
+ *
+ * When a new catalog version is published, products it adds get counters; existing counters are
+ * kept, so stock already sold or held in carts is not reset by a menu change. Counters live in
+ * fixed-size chunks, so adding products never copies (and never loses updates to) existing counters.
+ */
+
+package models;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public final class Inventory {
+    // Notified on the thread that made the reservation when a product's available stock
+    // drops to or below the low-stock threshold.
+    public interface LowStockListener {
+        void lowStock(int sku, int available);
+    }
+
+    public static final int DEFAULT_LOW_STOCK_THRESHOLD = 5;
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static Inventory shared;
+
+    // Replaced, never modified, when products are added, so lookups need no synchronization.
+    // Each chunk holds CHUNK_SIZE products' counters side by side: on hand at 2i, available at 2i + 1.
+    // A SKU whose bit in tracked is clear has no counters and is not limited.
+    private record Counters(AtomicIntegerArray[] chunks, long[] tracked) {
+        boolean isTracked(int sku) {
+            int word = sku >>> 6;
+            return sku >= 0 && word < tracked.length && (tracked[word] & 1L << sku) != 0;
+        }
+
+        AtomicIntegerArray chunk(int sku) {
+            return chunks[sku >>> CHUNK_BITS];
+        }
+    }
+
+    private volatile Counters counters = new Counters(new AtomicIntegerArray[0], new long[0]);
+    private final int lowStockThreshold;
+    private final List<LowStockListener> listeners = new CopyOnWriteArrayList<>();
+
+    public Inventory(Catalog catalog) {
+        this(catalog, DEFAULT_LOW_STOCK_THRESHOLD);
+    }
+
+    // Creates counters for every tracked product in the catalog.
+    public Inventory(Catalog catalog, int lowStockThreshold) {
+        this.lowStockThreshold = lowStockThreshold;
+        addProducts(catalog);
+    }
+
+    // Returns the process-wide inventory for the shared catalog, following every new catalog version.
+    // The low-stock threshold can be set with -Dcafepos.lowStockThreshold=<units>.
+    public static synchronized Inventory shared() {
+        if (shared == null) {
+            Inventory inventory = new Inventory(Catalog.shared(),
+                    Integer.getInteger("cafepos.lowStockThreshold", DEFAULT_LOW_STOCK_THRESHOLD));
+            Catalog.addChangeListener((previous, current) -> inventory.addProducts(current));
+            shared = inventory;
+        }
+        return shared;
+    }
+
+    // Adds counters for tracked products in the catalog that have none yet, at their opening quantity.
+    // Concurrent reservations are never blocked: new chunks are added and the chunk list swapped.
+    public synchronized void addProducts(Catalog catalog) {
+        Counters current = counters;
+        AtomicIntegerArray[] chunks = current.chunks();
+        long[] tracked = current.tracked();
+        boolean changed = false;
+        for (Product product : catalog.getProducts()) {
+            int sku = product.getSku();
+            if (product.getQuantity() == Product.UNTRACKED || current.isTracked(sku)) {
+                continue;
+            }
+            if (!changed) {
+                tracked = tracked.clone();
+                changed = true;
+            }
+            int chunk = sku >>> CHUNK_BITS;
+            if (chunk >= chunks.length) {
+                int length = chunks.length;
+                chunks = Arrays.copyOf(chunks, chunk + 1);
+                for (int i = length; i < chunks.length; i++) {
+                    chunks[i] = new AtomicIntegerArray(2 * CHUNK_SIZE);
+                }
+            }
+            if (sku >>> 6 >= tracked.length) {
+                tracked = Arrays.copyOf(tracked, (sku >>> 6) + 1);
+            }
+            int index = 2 * (sku & CHUNK_SIZE - 1);
+            chunks[chunk].set(index, product.getQuantity());
+            chunks[chunk].set(index + 1, product.getQuantity());
+            tracked[sku >>> 6] |= 1L << sku;
+        }
+        if (changed) {
+            counters = new Counters(chunks, tracked);
+        }
+    }
+
+    public void addLowStockListener(LowStockListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeLowStockListener(LowStockListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Reserves the quantity for a cart. Returns false, reserving nothing, if not enough stock is available.
+    // Untracked products can always be reserved.
+    public boolean reserve(int sku, int quantity) {
+        Counters current = counters;
+        if (!current.isTracked(sku)) {
+            return true;
+        }
+        AtomicIntegerArray chunk = current.chunk(sku);
+        int index = 2 * (sku & CHUNK_SIZE - 1) + 1;
+        int before;
+        int after;
+        do {
+            before = chunk.get(index);
+            after = before - quantity;
+            if (after < 0) {
+                return false;
+            }
+        } while (!chunk.compareAndSet(index, before, after));
+        if (before > lowStockThreshold && after <= lowStockThreshold) {
+            for (LowStockListener listener : listeners) {
+                listener.lowStock(sku, after);
+            }
+        }
+        return true;
+    }
+
+    // Returns reserved stock, e.g. when an item is removed from a cart.
+    public void release(int sku, int quantity) {
+        Counters current = counters;
+        if (current.isTracked(sku)) {
+            current.chunk(sku).addAndGet(2 * (sku & CHUNK_SIZE - 1) + 1, quantity);
+        }
+    }
+
+    // Records reserved stock as sold.
+    public void commit(int sku, int quantity) {
+        Counters current = counters;
+        if (current.isTracked(sku)) {
+            current.chunk(sku).addAndGet(2 * (sku & CHUNK_SIZE - 1), -quantity);
+        }
+    }
+
+    // Returns the stock that can still be added to carts, or Integer.MAX_VALUE for untracked products.
+    public int getAvailable(int sku) {
+        Counters current = counters;
+        return current.isTracked(sku) ? current.chunk(sku).get(2 * (sku & CHUNK_SIZE - 1) + 1) : Integer.MAX_VALUE;
+    }
+
+    // Returns the stock on hand, including stock reserved by open carts, or Integer.MAX_VALUE for untracked products.
+    public int getOnHand(int sku) {
+        Counters current = counters;
+        return current.isTracked(sku) ? current.chunk(sku).get(2 * (sku & CHUNK_SIZE - 1)) : Integer.MAX_VALUE;
+    }
+
+    public int getLowStockThreshold() {
+        return lowStockThreshold;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Money is an exact amount in cents. All cart, bill and report arithmetic is done in Money
+ * so totals never drift the way repeated double additions do.
+ *
+ * Rounding rules: prices and typed amounts round half-up to the cent when parsed,
+ * percentage discounts round half-up to the cent (so a half cent goes to the customer),
+ * and totals and change are exact cent arithmetic with no further rounding.
+ */
+
+package models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public record Money(long cents) implements Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+
+    // Basis points in 100%, i.e. a percentage is expressed in hundredths of a percent.
+    public static final long FULL_PERCENTAGE_BASIS_POINTS = 10_000;
+
+    // Longest text parse() accepts, and most digits allowed before or after the decimal point.
+    private static final int MAX_PARSE_LENGTH = 40;
+    private static final int MAX_DIGITS = 18;
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    // Converts a decimal amount, such as a catalog price, rounding half-up to the cent.
+    public static Money of(double amount) {
+        return parse(Double.toString(amount));
+    }
+
+    // Parses an amount such as "12", "12.5" or "12.34" without going through double.
+    // Throws NumberFormatException if the text is not a number or the amount does not fit in cents.
+    public static Money parse(String text) {
+        String trimmed = text.trim();
+        if (trimmed.length() > MAX_PARSE_LENGTH) {
+            throw new NumberFormatException("Amount is too long: " + trimmed.substring(0, MAX_PARSE_LENGTH) + "...");
+        }
+        BigDecimal amount = new BigDecimal(trimmed);
+        // Rescaling costs time in proportion to the exponent, so "1e99999999" is rejected before it.
+        if (amount.precision() - amount.scale() > MAX_DIGITS || amount.scale() > MAX_DIGITS) {
+            throw new NumberFormatException("Amount is out of range: " + trimmed);
+        }
+        try {
+            return ofCents(amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount is out of range: " + trimmed);
+        }
+    }
+
+    // Converts a percentage such as 12.5 into basis points (1250), rounding half-up.
+    public static long toBasisPoints(double percentage) {
+        return Math.round(percentage * 100);
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money times(int quantity) {
+        return ofCents(Math.multiplyExact(cents, quantity));
+    }
+
+    // Returns the given share of this amount in basis points, rounded half-up to the cent.
+    public Money percentage(long basisPoints) {
+        return ofCents(percentageOf(cents, basisPoints));
+    }
+
+    // Returns basisPoints/10000 of the given cents, rounded half-up (away from zero on a half cent).
+    public static long percentageOf(long cents, long basisPoints) {
+        long scaled = Math.multiplyExact(cents, basisPoints);
+        long half = FULL_PERCENTAGE_BASIS_POINTS / 2;
+        return scaled >= 0
+                ? (scaled + half) / FULL_PERCENTAGE_BASIS_POINTS
+                : -((-scaled + half) / FULL_PERCENTAGE_BASIS_POINTS);
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    public boolean isZero() {
+        return cents == 0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    // Appends the amount as "1234.56" without going through a format string.
+    public StringBuilder appendTo(StringBuilder out) {
+        return appendCents(out, cents);
+    }
+
+    // Appends a cent amount as "1234.56". Also used for basis points, which have the same two decimals.
+    public static StringBuilder appendCents(StringBuilder out, long cents) {
+        if (cents < 0) {
+            out.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        out.append(cents / 100).append('.');
+        if (fraction < 10) {
+            out.append('0');
+        }
+        return out.append(fraction);
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(12)).toString();
+    }
+}
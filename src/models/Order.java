@@ -0,0 +1,53 @@
+package models;
+
+import java.util.List;
+
+// A completed, paid order. Orders are immutable snapshots taken when the bill is generated,
+// so they can be journaled, indexed and reported on after the cart has been cleared.
+// The total is the subtotal less the promotions, less the percentage discount on what remains.
+public record Order(long orderNumber, long timestamp, String cashier, List<Line> lines,
+                    Money subtotal, long discountBasisPoints, Money discount, Money total,
+                    Money payment, Money change, List<Promotion> promotions) {
+
+    public Order {
+        lines = List.copyOf(lines);
+        promotions = List.copyOf(promotions);
+    }
+
+    // An order without promotions.
+    public Order(long orderNumber, long timestamp, String cashier, List<Line> lines,
+                 Money subtotal, long discountBasisPoints, Money discount, Money total,
+                 Money payment, Money change) {
+        this(orderNumber, timestamp, cashier, lines, subtotal, discountBasisPoints, discount, total,
+                payment, change, List.of());
+    }
+
+    // One bill line: the product as it was sold, at the price it was rung up at.
+    public record Line(String name, String category, int quantity, Money unitPrice) {
+        public Money total() {
+            return unitPrice.times(quantity);
+        }
+    }
+
+    // A promotion applied to the order, with the amount it took off.
+    public record Promotion(String name, Money discount) {
+    }
+
+    // Returns the total taken off by promotions.
+    public Money promotionDiscount() {
+        long cents = 0;
+        for (Promotion promotion : promotions) {
+            cents += promotion.discount().cents();
+        }
+        return Money.ofCents(cents);
+    }
+
+    // Returns the number of units sold in this order, across all lines.
+    public int itemCount() {
+        int count = 0;
+        for (Line line : lines) {
+            count += line.quantity();
+        }
+        return count;
+    }
+}
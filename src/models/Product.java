@@ -1,12 +1,27 @@
 package models;
 
 public class Product {
+    // Dense id assigned when the product first appears in a catalog; see Catalog.
+    private int sku = NO_SKU;
     private String category;
     private String name;
-    private double price;
+    private Money price = Money.ZERO;
     private String image;
+    // Opening stock from the catalog, or UNTRACKED if the catalog does not limit it.
+    private int quantity = UNTRACKED;
+
+    public static final int UNTRACKED = -1;
+    public static final int NO_SKU = -1;
 
     // Getters and Setters
+    public int getSku() {
+        return sku;
+    }
+
+    void setSku(int sku) {
+        this.sku = sku;
+    }
+
     public String getCategory() {
         return category;
     }
@@ -23,11 +38,11 @@ public class Product {
         this.name = name;
     }
 
-    public double getPrice() {
+    public Money getPrice() {
         return  price;
     }
 
-    public void setPrice(double price) {
+    public void setPrice(Money price) {
         this.price = price;
     }
 
@@ -38,4 +53,12 @@ public class Product {
     public void setImage(String image) {
         this.image = image;
     }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
 }
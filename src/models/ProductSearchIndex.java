@@ -0,0 +1,223 @@
+/**
+ * ProductSearchIndex answers type-ahead product searches. It is built once per catalog and holds
+ * a sorted word list for prefix lookups and a trigram index for in-word and typo-tolerant matches.
+ *
+ * Results are ranked: name prefix, then word prefix, then substring, then fuzzy (trigram overlap);
+ * ties go to the shorter name, then alphabetical order.
+ */
+
+package models;
+
+import java.util.*;
+
+public final class ProductSearchIndex {
+    private static final int NAME_PREFIX_SCORE = 4_000;
+    private static final int WORD_PREFIX_SCORE = 3_000;
+    private static final int SUBSTRING_SCORE = 2_000;
+    private static final int FUZZY_SCORE = 1_000;
+
+    private final Product[] products;
+    private final String[] normalizedNames;
+    // Every word of every name, sorted, with the product each one came from.
+    private final String[] words;
+    private final int[] wordProducts;
+    // Trigram (three chars packed into a long) to the ascending ids of the products containing it.
+    private final Map<Long, int[]> trigrams;
+
+    private record WordEntry(String word, int product) {
+    }
+
+    // A growable list of ascending product ids, used while building the trigram index.
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+    // Scratch space for scoring, reused across searches; guarded by this.
+    private final int[] scores;
+    private final int[] overlaps;
+    private final int[] touched;
+
+    public ProductSearchIndex(Collection<Product> catalogProducts) {
+        products = catalogProducts.stream()
+                .sorted(Comparator.comparing(Product::getName))
+                .toArray(Product[]::new);
+        normalizedNames = new String[products.length];
+        List<WordEntry> wordEntries = new ArrayList<>();
+        Map<Long, Postings> trigramPostings = new HashMap<>();
+        for (int id = 0; id < products.length; id++) {
+            String name = normalize(products[id].getName());
+            normalizedNames[id] = name;
+            for (String word : name.split(" ")) {
+                if (!word.isEmpty()) {
+                    wordEntries.add(new WordEntry(word, id));
+                }
+            }
+            for (long trigram : trigramsOf(name)) {
+                trigramPostings.computeIfAbsent(trigram, key -> new Postings()).add(id);
+            }
+        }
+
+        wordEntries.sort(Comparator.comparing(WordEntry::word));
+        words = new String[wordEntries.size()];
+        wordProducts = new int[wordEntries.size()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = wordEntries.get(i).word();
+            wordProducts[i] = wordEntries.get(i).product();
+        }
+
+        trigrams = new HashMap<>(trigramPostings.size() * 2);
+        for (Map.Entry<Long, Postings> entry : trigramPostings.entrySet()) {
+            trigrams.put(entry.getKey(), entry.getValue().toArray());
+        }
+        scores = new int[products.length];
+        overlaps = new int[products.length];
+        touched = new int[products.length];
+    }
+
+    // Returns up to limit products matching the query, best match first.
+    public synchronized List<Product> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int touchedCount = 0;
+
+        // Word prefixes: a binary search into the sorted word list, then a scan over the matching run.
+        int first = lowerBound(normalized);
+        for (int i = first; i < words.length && words[i].startsWith(normalized); i++) {
+            int id = wordProducts[i];
+            if (scores[id] == 0) {
+                touched[touchedCount++] = id;
+            }
+            int score = normalizedNames[id].startsWith(normalized) ? NAME_PREFIX_SCORE : WORD_PREFIX_SCORE;
+            scores[id] = Math.max(scores[id], score);
+        }
+
+        // In-word and misspelled matches: count the query trigrams each product shares.
+        long[] queryTrigrams = trigramsOf(normalized);
+        if (normalized.length() >= 3) {
+            for (long trigram : queryTrigrams) {
+                int[] ids = trigrams.get(trigram);
+                if (ids == null) continue;
+                for (int id : ids) {
+                    if (scores[id] == 0 && overlaps[id] == 0) {
+                        touched[touchedCount++] = id;
+                    }
+                    overlaps[id]++;
+                }
+            }
+        }
+        int minimumOverlap = Math.max(2, (queryTrigrams.length + 1) / 2);
+
+        // Keeps the best `limit` matches in an array sorted best first; the limit is small, so insertion is cheap.
+        int[] best = new int[Math.min(limit, touchedCount)];
+        int[] bestScores = new int[best.length];
+        int bestCount = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            int score = scores[id];
+            if (score == 0) {
+                if (normalizedNames[id].startsWith(normalized)) {
+                    score = NAME_PREFIX_SCORE;
+                } else if (normalizedNames[id].contains(normalized)) {
+                    score = SUBSTRING_SCORE;
+                } else if (overlaps[id] >= minimumOverlap) {
+                    score = FUZZY_SCORE + overlaps[id] * 100 / queryTrigrams.length;
+                }
+            }
+            scores[id] = 0;
+            overlaps[id] = 0;
+            if (score == 0 || (bestCount == best.length && !ranksBefore(id, score, best[bestCount - 1], bestScores[bestCount - 1]))) {
+                continue;
+            }
+            int position = bestCount < best.length ? bestCount++ : bestCount - 1;
+            while (position > 0 && ranksBefore(id, score, best[position - 1], bestScores[position - 1])) {
+                best[position] = best[position - 1];
+                bestScores[position] = bestScores[position - 1];
+                position--;
+            }
+            best[position] = id;
+            bestScores[position] = score;
+        }
+
+        List<Product> results = new ArrayList<>(bestCount);
+        for (int i = 0; i < bestCount; i++) {
+            results.add(products[best[i]]);
+        }
+        return results;
+    }
+
+    // Higher scores rank first, then shorter names, then alphabetical order (ids follow name order).
+    private boolean ranksBefore(int id, int score, int otherId, int otherScore) {
+        if (score != otherScore) {
+            return score > otherScore;
+        }
+        int length = normalizedNames[id].length();
+        int otherLength = normalizedNames[otherId].length();
+        return length != otherLength ? length < otherLength : id < otherId;
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = words.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (words[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Lower-cases the text and turns anything other than letters and digits into single spaces.
+    private static String normalize(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                out.append(c);
+                space = false;
+            } else if (!space) {
+                out.append(' ');
+                space = true;
+            }
+        }
+        int length = out.length();
+        return space && length > 0 ? out.substring(0, length - 1) : out.toString();
+    }
+
+    // Returns the distinct trigrams of the text's words, each word padded so its start and end form trigrams too.
+    private static long[] trigramsOf(String text) {
+        long[] result = new long[text.length() * 3 + 3];
+        int count = 0;
+        for (String word : text.split(" ")) {
+            if (word.isEmpty()) continue;
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                long trigram = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+                boolean seen = false;
+                for (int j = 0; j < count && !seen; j++) {
+                    seen = result[j] == trigram;
+                }
+                if (!seen) {
+                    result[count++] = trigram;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * ReceiptRenderer lays out the bill text in fixed-width columns.
+ * It writes straight into one reusable buffer instead of parsing format strings for every line,
+ * so an instance must not be shared between threads.
+ */
+
+package models;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+public class ReceiptRenderer {
+    private static final String HEADER = "               ===== Cafe POS Bill =====\n";
+    private static final String RULE = "------------------------------------------------\n";
+    private static final String FOOTER = "================================================";
+    private static final int NAME_WIDTH = 20;
+    private static final int COLUMN_WIDTH = 10;
+    private static final int AMOUNT_WIDTH = 9;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    private final StringBuilder buffer = new StringBuilder(1024);
+
+    // Renders the bill for the given order.
+    // The order number and cashier lines are only printed when the order has them.
+    public String render(Order order) {
+        StringBuilder out = buffer;
+        out.setLength(0);
+        out.append(HEADER);
+        if (order.orderNumber() > 0) {
+            int start = out.length();
+            pad(out.append("Order #").append(order.orderNumber()), start, NAME_WIDTH).append(' ');
+            TIMESTAMP_FORMAT.formatTo(Instant.ofEpochMilli(order.timestamp()), out);
+            out.append('\n');
+        }
+        if (order.cashier() != null) {
+            text(out, "Cashier:", NAME_WIDTH).append(' ').append(order.cashier()).append('\n');
+        }
+        text(out, "Item", NAME_WIDTH).append(' ');
+        text(out, "Qty", COLUMN_WIDTH).append(' ');
+        text(out, "Price", COLUMN_WIDTH).append(' ');
+        text(out, "Total", COLUMN_WIDTH).append('\n');
+        out.append(RULE);
+        for (Order.Line line : order.lines()) {
+            text(out, line.name(), NAME_WIDTH).append(' ');
+            int start = out.length();
+            pad(out.append(line.quantity()), start, COLUMN_WIDTH).append(' ');
+            amount(out, line.unitPrice()).append(' ');
+            amount(out, line.total()).append('\n');
+        }
+        out.append(RULE);
+        summaryLine(out, "Subtotal:", order.subtotal());
+        for (Order.Promotion promotion : order.promotions()) {
+            text(out, promotion.name(), NAME_WIDTH).append(' ');
+            out.append("-$");
+            int start = out.length();
+            pad(promotion.discount().appendTo(out), start, AMOUNT_WIDTH).append('\n');
+        }
+        if (order.discountBasisPoints() > 0) {
+            text(out, "Discount:", NAME_WIDTH).append(' ');
+            int start = out.length();
+            pad(Money.appendCents(out, order.discountBasisPoints()), start, AMOUNT_WIDTH).append("%\n");
+            summaryLine(out, "Discount Amount:", order.discount());
+        }
+        summaryLine(out, "Final Total:", order.total());
+        summaryLine(out, "Payment:", order.payment());
+        summaryLine(out, "Change:", order.change());
+        out.append(FOOTER);
+        return out.toString();
+    }
+
+    private static void summaryLine(StringBuilder out, String label, Money value) {
+        text(out, label, NAME_WIDTH).append(' ');
+        amount(out, value).append('\n');
+    }
+
+    // Appends "$" followed by the amount, left-aligned in the amount column.
+    private static StringBuilder amount(StringBuilder out, Money value) {
+        out.append('$');
+        int start = out.length();
+        return pad(value.appendTo(out), start, AMOUNT_WIDTH);
+    }
+
+    // Appends the text left-aligned in a column of the given width. Longer text is not truncated.
+    private static StringBuilder text(StringBuilder out, String value, int width) {
+        int start = out.length();
+        return pad(out.append(value), start, width);
+    }
+
+    private static StringBuilder pad(StringBuilder out, int start, int width) {
+        for (int i = out.length() - start; i < width; i++) {
+            out.append(' ');
+        }
+        return out;
+    }
+}
@@ -1,8 +1,64 @@
+/**
+ * User is a cashier's stored credential: a salted PBKDF2 hash of their password or PIN, never the
+ * PIN itself. The iteration count is stored with the hash, so it can be raised for new hashes
+ * without invalidating old ones.
+ */
+
 package models;
 
-public record User(String username, String password) {
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+public record User(String username, String salt, int iterations, String hash) {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom random = new SecureRandom();
+
+    public User {
+        if (username == null || username.isBlank()) {
+            throw new IllegalArgumentException("Username must not be blank");
+        }
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("Iterations must be positive");
+        }
+    }
+
+    // Hashes the password with a fresh random salt.
+    public static User create(String username, String password, int iterations) {
+        if (password == null || password.isEmpty()) {
+            throw new IllegalArgumentException("Password must not be empty");
+        }
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return new User(username, encoder.encodeToString(salt), iterations,
+                encoder.encodeToString(derive(password, salt, iterations)));
+    }
+
+    // Checks the password against the hash, taking the same time whether or not it matches.
+    public boolean authenticate(String password) {
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] expected = decoder.decode(hash);
+        return MessageDigest.isEqual(expected, derive(password, decoder.decode(salt), iterations));
+    }
 
-    public boolean authenticate(String username, String password) {
-        return this.username.equals(username) && this.password.equals(password);
+    // Returns the PBKDF2-HMAC-SHA256 hash of the password.
+    public static byte[] derive(String password, byte[] salt, int iterations) {
+        char[] chars = password.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(chars, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(chars, '\0');
+        }
     }
 }
@@ -0,0 +1,224 @@
+/**
+ * PricingRules is the promotion rule set compiled against one catalog. Rule definitions are read
+ * from pricing.json; compiling them resolves every category and product name up front into lookup
+ * tables indexed by SKU, so a cart change only has to look up which rules its product affects.
+ * A product name matches that name in every category that has it.
+ *
+ * pricing.json is a list of rules. Every rule has a name and a type, and may be limited to a time
+ * window ("from"/"to" as HH:mm, and "days"). Rules match "products" and/or "categories":
+ *
+ *   {"type": "percentOff", "percent": 20, ...}          a percentage off each matched unit
+ *   {"type": "buyGet", "buy": 3, "get": 1, ...}          every buy+get matched units, get the cheapest free
+ *   {"type": "combo", "price": 6.50, "slots": [...]}     one unit from each slot (itself a product/category
+ *                                                        match) for a set price
+ *
+ * Rules stack: a product matched by two rules is discounted by both, which compile() warns about.
+ */
+
+package pricing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import models.Catalog;
+import models.Money;
+import models.Product;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.*;
+
+public final class PricingRules {
+    public static final PricingRules NONE = new PricingRules(List.of(), new int[0][]);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final int[] EMPTY = new int[0];
+    private static JsonNode sharedDefinitions;
+
+    private final List<Rule> rules;
+    // Per SKU, the rules the product is matched by, as (rule, local product index) pairs; null if none.
+    private final int[][] targetsBySku;
+
+    private PricingRules(List<Rule> rules, int[][] targetsBySku) {
+        this.rules = rules;
+        this.targetsBySku = targetsBySku;
+    }
+
+    // Returns the rule definitions in /pricing.json, read once per process; an empty list if there is none.
+    public static synchronized JsonNode sharedDefinitions() {
+        if (sharedDefinitions == null) {
+            URL url = PricingRules.class.getResource("/pricing.json");
+            if (url == null) {
+                sharedDefinitions = mapper.createArrayNode();
+            } else {
+                try (InputStream in = url.openStream()) {
+                    sharedDefinitions = mapper.readTree(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read pricing.json: " + e.getMessage(), e);
+                }
+            }
+        }
+        return sharedDefinitions;
+    }
+
+    // Compiles the definitions against the catalog. Names the catalog does not have match nothing.
+    // Throws IllegalArgumentException for a malformed rule.
+    public static PricingRules compile(JsonNode definitions, Catalog catalog) {
+        if (!definitions.isArray()) {
+            throw new IllegalArgumentException("Pricing rules must be a JSON list");
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (JsonNode definition : definitions) {
+            rules.add(compileRule(definition, catalog));
+        }
+
+        int[][] targetsBySku = new int[catalog.getSkuLimit()][];
+        for (int r = 0; r < rules.size(); r++) {
+            List<Product> products = rules.get(r).getProducts();
+            for (int local = 0; local < products.size(); local++) {
+                Product product = products.get(local);
+                int[] targets = targetsBySku[product.getSku()];
+                // Appends the (rule, local index) pair; a product is matched by few rules.
+                targets = targets == null ? new int[2] : Arrays.copyOf(targets, targets.length + 2);
+                targets[targets.length - 2] = r;
+                targets[targets.length - 1] = local;
+                targetsBySku[product.getSku()] = targets;
+            }
+        }
+        for (Product product : catalog.getProducts()) {
+            int[] targets = targetsBySku[product.getSku()];
+            if (targets != null && targets.length > 2) {
+                System.err.println("Pricing: " + product.getName() + " is matched by " + targets.length / 2
+                        + " rules, whose discounts stack");
+            }
+        }
+        return new PricingRules(List.copyOf(rules), targetsBySku);
+    }
+
+    // Starts the pricing state for a new cart.
+    public PricingSession newSession() {
+        return new PricingSession(this);
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    // Returns the (rule, local product index) pairs for the SKU, flattened; empty if no rule matches it.
+    int[] targets(int sku) {
+        int[] targets = sku < targetsBySku.length ? targetsBySku[sku] : null;
+        return targets == null ? EMPTY : targets;
+    }
+
+    private static Rule compileRule(JsonNode definition, Catalog catalog) {
+        String name = requiredText(definition, "name", "(unnamed)");
+        String type = requiredText(definition, "type", name);
+        Rule.Schedule schedule = schedule(definition, name);
+        switch (type) {
+            case "percentOff" -> {
+                double percent = requiredNumber(definition, "percent", name);
+                if (percent <= 0 || percent > 100) {
+                    throw new IllegalArgumentException(name + ": percent must be between 0 and 100");
+                }
+                return new Rule.PercentOff(name, schedule, List.copyOf(match(definition, catalog, name)),
+                        Money.toBasisPoints(percent));
+            }
+            case "buyGet" -> {
+                int buy = (int) requiredNumber(definition, "buy", name);
+                int get = (int) requiredNumber(definition, "get", name);
+                if (buy <= 0 || get <= 0) {
+                    throw new IllegalArgumentException(name + ": buy and get must be positive");
+                }
+                return new Rule.BuyGet(name, schedule, List.copyOf(match(definition, catalog, name)), buy, get);
+            }
+            case "combo" -> {
+                JsonNode slotDefinitions = definition.get("slots");
+                if (slotDefinitions == null || !slotDefinitions.isArray() || slotDefinitions.size() < 2) {
+                    throw new IllegalArgumentException(name + ": a combo needs at least two slots");
+                }
+                // Products are numbered across all slots, so a product in two slots has one local index.
+                List<Product> products = new ArrayList<>();
+                Map<Product, Integer> localIndex = new HashMap<>();
+                int[][] slots = new int[slotDefinitions.size()][];
+                for (int s = 0; s < slots.length; s++) {
+                    Set<Product> slotProducts = match(slotDefinitions.get(s), catalog, name);
+                    slots[s] = slotProducts.stream().mapToInt(product -> localIndex.computeIfAbsent(product, key -> {
+                        products.add(key);
+                        return products.size() - 1;
+                    })).toArray();
+                }
+                long price = Money.parse(requiredText(definition, "price", name)).cents();
+                return new Rule.Combo(name, schedule, products, slots, price);
+            }
+            default -> throw new IllegalArgumentException(name + ": unknown rule type " + type);
+        }
+    }
+
+    // Returns the catalog products named by the node's "products" and "categories", in catalog order.
+    private static Set<Product> match(JsonNode node, Catalog catalog, String rule) {
+        Set<Product> products = new LinkedHashSet<>();
+        for (JsonNode category : array(node, "categories", rule)) {
+            products.addAll(catalog.getProducts(category.asText()));
+        }
+        for (JsonNode product : array(node, "products", rule)) {
+            products.addAll(catalog.findAll(product.asText()));
+        }
+        return products;
+    }
+
+    private static Rule.Schedule schedule(JsonNode definition, String rule) {
+        if (!definition.has("from") && !definition.has("to") && !definition.has("days")) {
+            return Rule.Schedule.ALWAYS;
+        }
+        int from = definition.has("from") ? minuteOfDay(definition.get("from").asText(), rule) : 0;
+        int to = definition.has("to") ? minuteOfDay(definition.get("to").asText(), rule) : 24 * 60;
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (JsonNode day : array(definition, "days", rule)) {
+            try {
+                days.add(DayOfWeek.valueOf(day.asText().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(rule + ": unknown day " + day.asText());
+            }
+        }
+        return new Rule.Schedule(days.isEmpty() ? EnumSet.allOf(DayOfWeek.class) : days, from, to);
+    }
+
+    private static int minuteOfDay(String time, String rule) {
+        try {
+            LocalTime parsed = LocalTime.parse(time);
+            return parsed.getHour() * 60 + parsed.getMinute();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(rule + ": invalid time " + time);
+        }
+    }
+
+    private static Iterable<JsonNode> array(JsonNode node, String field, String rule) {
+        JsonNode value = node.get(field);
+        if (value == null) {
+            return List.of();
+        }
+        if (!value.isArray()) {
+            throw new IllegalArgumentException(rule + ": " + field + " must be a list");
+        }
+        return value;
+    }
+
+    private static String requiredText(JsonNode node, String field, String rule) {
+        JsonNode value = node.get(field);
+        if (value == null || value.isNull() || value.asText().isBlank()) {
+            throw new IllegalArgumentException(rule + ": missing " + field);
+        }
+        return value.asText();
+    }
+
+    private static double requiredNumber(JsonNode node, String field, String rule) {
+        JsonNode value = node.get(field);
+        if (value == null || !value.isNumber()) {
+            throw new IllegalArgumentException(rule + ": " + field + " must be a number");
+        }
+        return value.asDouble();
+    }
+}
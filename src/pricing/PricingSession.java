@@ -0,0 +1,124 @@
+/**
+ * PricingSession tracks one cart's promotions. The cart reports each line change; the session
+ * updates the quantities of the rules that product can affect and marks only those rules dirty.
+ * Reading the discount re-evaluates the dirty rules, plus any whose time window has opened or
+ * closed since the last read, and keeps the rest of the cached per-rule discounts.
+ *
+ * A session is not thread-safe; it is guarded by its cart, like the cart's running totals.
+ */
+
+package pricing;
+
+import models.Money;
+import models.Order;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class PricingSession {
+    private final PricingRules rules;
+    private final Rule[] ruleArray;
+    private final ZoneId zone = ZoneId.systemDefault();
+    // Per rule: the cart quantity and unit price of each product it matches, by local index.
+    private final int[][] quantities;
+    private final long[][] unitPrices;
+    private final long[] discounts;
+    private final boolean[] active;
+    private final boolean[] dirty;
+    private final int[] scratch;
+    private boolean anyDirty;
+    private long totalDiscount;
+
+    PricingSession(PricingRules rules) {
+        this.rules = rules;
+        this.ruleArray = rules.getRules().toArray(new Rule[0]);
+        int count = ruleArray.length;
+        quantities = new int[count][];
+        unitPrices = new long[count][];
+        discounts = new long[count];
+        active = new boolean[count];
+        dirty = new boolean[count];
+        int widest = 0;
+        for (int r = 0; r < count; r++) {
+            int size = ruleArray[r].getProducts().size();
+            quantities[r] = new int[size];
+            unitPrices[r] = new long[size];
+            widest = Math.max(widest, size);
+        }
+        scratch = new int[widest];
+    }
+
+    // Records the cart's quantity and unit price for the product with the SKU; a quantity of 0 removes it.
+    public void setLine(int sku, int quantity, long unitPriceCents) {
+        int[] targets = rules.targets(sku);
+        for (int i = 0; i < targets.length; i += 2) {
+            int rule = targets[i];
+            int local = targets[i + 1];
+            quantities[rule][local] = quantity;
+            unitPrices[rule][local] = unitPriceCents;
+            dirty[rule] = true;
+            anyDirty = true;
+        }
+    }
+
+    // Forgets every line, e.g. when the cart is cleared or checked out.
+    public void clear() {
+        for (int r = 0; r < ruleArray.length; r++) {
+            Arrays.fill(quantities[r], 0);
+            discounts[r] = 0;
+            dirty[r] = false;
+        }
+        anyDirty = false;
+        totalDiscount = 0;
+    }
+
+    // Returns the total promotion discount in cents at the given time.
+    public long discountCents(long nowMillis) {
+        refresh(nowMillis);
+        return totalDiscount;
+    }
+
+    // Returns the promotions that apply at the given time, in rule order.
+    public List<Order.Promotion> promotions(long nowMillis) {
+        refresh(nowMillis);
+        List<Order.Promotion> applied = new ArrayList<>();
+        for (int r = 0; r < ruleArray.length; r++) {
+            if (discounts[r] > 0) {
+                applied.add(new Order.Promotion(ruleArray[r].getName(), Money.ofCents(discounts[r])));
+            }
+        }
+        return applied;
+    }
+
+    private void refresh(long nowMillis) {
+        if (ruleArray.length == 0) {
+            return;
+        }
+        ZonedDateTime now = Instant.ofEpochMilli(nowMillis).atZone(zone);
+        int minuteOfDay = now.getHour() * 60 + now.getMinute();
+        for (int r = 0; r < ruleArray.length; r++) {
+            boolean isActive = ruleArray[r].getSchedule().isActive(now.getDayOfWeek(), minuteOfDay);
+            if (isActive != active[r]) {
+                active[r] = isActive;
+                dirty[r] = true;
+                anyDirty = true;
+            }
+        }
+        if (!anyDirty) {
+            return;
+        }
+        for (int r = 0; r < ruleArray.length; r++) {
+            if (dirty[r]) {
+                long discount = active[r] ? ruleArray[r].discount(quantities[r], unitPrices[r], scratch) : 0;
+                totalDiscount += discount - discounts[r];
+                discounts[r] = discount;
+                dirty[r] = false;
+            }
+        }
+        anyDirty = false;
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Rule is one compiled promotion. A rule only sees the products it can match, by local index:
+ * the quantities and unit prices of those products in a cart, in the order of getProducts().
+ * Evaluation touches nothing else, so its cost depends on the rule's products, not the cart.
+ */
+
+package pricing;
+
+import models.Money;
+import models.Product;
+
+import java.time.DayOfWeek;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+public abstract sealed class Rule permits Rule.PercentOff, Rule.BuyGet, Rule.Combo {
+    // When a rule applies: on the given days, from one minute of the day (inclusive) to another (exclusive).
+    // A window that ends before it starts runs past midnight.
+    public record Schedule(Set<DayOfWeek> days, int fromMinute, int toMinute) {
+        public static final Schedule ALWAYS = new Schedule(EnumSet.allOf(DayOfWeek.class), 0, 24 * 60);
+
+        public boolean isActive(DayOfWeek day, int minuteOfDay) {
+            if (!days.contains(day)) {
+                return false;
+            }
+            return fromMinute <= toMinute
+                    ? minuteOfDay >= fromMinute && minuteOfDay < toMinute
+                    : minuteOfDay >= fromMinute || minuteOfDay < toMinute;
+        }
+    }
+
+    private final String name;
+    private final Schedule schedule;
+    private final List<Product> products;
+
+    Rule(String name, Schedule schedule, List<Product> products) {
+        this.name = name;
+        this.schedule = schedule;
+        this.products = List.copyOf(products);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Schedule getSchedule() {
+        return schedule;
+    }
+
+    // The products this rule can match; quantities and prices passed to discount() follow this order.
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    // Returns the discount in cents for the matched quantities and unit prices.
+    // The scratch array has at least getProducts().size() elements and may be overwritten.
+    abstract long discount(int[] quantities, long[] unitPrices, int[] scratch);
+
+    // A percentage off every matched unit, e.g. 20% off teas from 2 to 4pm.
+    public static final class PercentOff extends Rule {
+        private final long basisPoints;
+
+        PercentOff(String name, Schedule schedule, List<Product> products, long basisPoints) {
+            super(name, schedule, products);
+            this.basisPoints = basisPoints;
+        }
+
+        @Override
+        long discount(int[] quantities, long[] unitPrices, int[] scratch) {
+            long total = 0;
+            for (int i = 0; i < quantities.length; i++) {
+                total += quantities[i] * unitPrices[i];
+            }
+            return Money.percentageOf(total, basisPoints);
+        }
+    }
+
+    // For every `buy` matched units, the next `get` are free; the cheapest units are the free ones.
+    public static final class BuyGet extends Rule {
+        private final int buy;
+        private final int get;
+
+        BuyGet(String name, Schedule schedule, List<Product> products, int buy, int get) {
+            super(name, schedule, products);
+            this.buy = buy;
+            this.get = get;
+        }
+
+        @Override
+        long discount(int[] quantities, long[] unitPrices, int[] scratch) {
+            long units = 0;
+            int count = 0;
+            for (int i = 0; i < quantities.length; i++) {
+                if (quantities[i] > 0) {
+                    units += quantities[i];
+                    // Insertion sort by price: rules match a handful of products.
+                    int position = count++;
+                    while (position > 0 && unitPrices[scratch[position - 1]] > unitPrices[i]) {
+                        scratch[position] = scratch[position - 1];
+                        position--;
+                    }
+                    scratch[position] = i;
+                }
+            }
+            long free = units / (buy + get) * get;
+            long discount = 0;
+            for (int i = 0; i < count && free > 0; i++) {
+                long taken = Math.min(free, quantities[scratch[i]]);
+                discount += taken * unitPrices[scratch[i]];
+                free -= taken;
+            }
+            return discount;
+        }
+    }
+
+    // A set price for one unit from each slot, e.g. any coffee and any pastry for $6.50.
+    // Each combo takes the dearest unit left in every slot, which gives the customer the biggest saving.
+    public static final class Combo extends Rule {
+        private final int[][] slots;
+        private final long priceCents;
+
+        Combo(String name, Schedule schedule, List<Product> products, int[][] slots, long priceCents) {
+            super(name, schedule, products);
+            this.slots = slots;
+            this.priceCents = priceCents;
+        }
+
+        @Override
+        long discount(int[] quantities, long[] unitPrices, int[] scratch) {
+            // scratch holds the units not yet used by a combo.
+            System.arraycopy(quantities, 0, scratch, 0, quantities.length);
+            int[] picks = new int[slots.length];
+            long discount = 0;
+            while (true) {
+                long comboPrice = 0;
+                for (int s = 0; s < slots.length; s++) {
+                    int pick = -1;
+                    for (int product : slots[s]) {
+                        if (scratch[product] > 0 && (pick < 0 || unitPrices[product] > unitPrices[pick])) {
+                            pick = product;
+                        }
+                    }
+                    if (pick < 0) {
+                        return discount;
+                    }
+                    // Holds the unit so a later slot matching the same product cannot take it too.
+                    scratch[pick]--;
+                    picks[s] = pick;
+                    comboPrice += unitPrices[pick];
+                }
+                if (comboPrice <= priceCents) {
+                    return discount;
+                }
+                // The same picks repeat while every picked product has units left, so take them all at once.
+                long repeats = Long.MAX_VALUE;
+                for (int s = 0; s < slots.length; s++) {
+                    repeats = Math.min(repeats, scratch[picks[s]] / occurrences(picks, picks[s]));
+                }
+                for (int s = 0; s < slots.length; s++) {
+                    scratch[picks[s]] -= (int) repeats;
+                }
+                discount += (repeats + 1) * (comboPrice - priceCents);
+            }
+        }
+
+        private static int occurrences(int[] picks, int product) {
+            int count = 0;
+            for (int pick : picks) {
+                if (pick == product) count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * EscPosEncoder turns a rendered bill into the ESC/POS byte stream understood by most thermal receipt
+ * printers: the bill's header line is printed centred and emphasized, the total in bold, and the paper
+ * is fed and cut after each receipt. Text is sent in the printer's default code page (PC437).
+ */
+
+package printing;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+public final class EscPosEncoder {
+    private static final byte ESC = 0x1B;
+    private static final byte GS = 0x1D;
+    private static final byte[] INITIALIZE = {ESC, '@'};
+    private static final byte[] ALIGN_LEFT = {ESC, 'a', 0};
+    private static final byte[] ALIGN_CENTER = {ESC, 'a', 1};
+    private static final byte[] BOLD_ON = {ESC, 'E', 1};
+    private static final byte[] BOLD_OFF = {ESC, 'E', 0};
+    private static final byte[] DOUBLE_HEIGHT_ON = {ESC, '!', 0x10};
+    private static final byte[] NORMAL_SIZE = {ESC, '!', 0};
+    // Feeds four lines, then a partial cut.
+    private static final byte[] FEED_AND_CUT = {ESC, 'd', 4, GS, 'V', 66, 0};
+
+    private static final Charset PRINTER_CHARSET =
+            Charset.isSupported("IBM437") ? Charset.forName("IBM437") : StandardCharsets.US_ASCII;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(2048);
+
+    // Encodes one receipt. The first line of the bill is its header; a line starting with "Final Total:" is bold.
+    // An instance reuses its buffer, so it must not be shared between threads.
+    public byte[] encode(String bill) {
+        out.reset();
+        out.writeBytes(INITIALIZE);
+        String[] lines = bill.split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            if (i == 0) {
+                out.writeBytes(ALIGN_CENTER);
+                out.writeBytes(BOLD_ON);
+                out.writeBytes(DOUBLE_HEIGHT_ON);
+                text(line.strip());
+                out.writeBytes(NORMAL_SIZE);
+                out.writeBytes(BOLD_OFF);
+                out.writeBytes(ALIGN_LEFT);
+            } else if (line.startsWith("Final Total:")) {
+                out.writeBytes(BOLD_ON);
+                text(line);
+                out.writeBytes(BOLD_OFF);
+            } else {
+                text(line);
+            }
+        }
+        out.writeBytes(FEED_AND_CUT);
+        return out.toByteArray();
+    }
+
+    private void text(String line) {
+        out.writeBytes(line.getBytes(PRINTER_CHARSET));
+        out.write('\n');
+    }
+}
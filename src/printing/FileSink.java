@@ -0,0 +1,56 @@
+package printing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Appends receipts to a file: a printer device such as /dev/usb/lp0, or a plain file for testing.
+public class FileSink implements PrinterSink {
+    private final Path file;
+    private FileChannel channel;
+
+    public FileSink(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void write(List<byte[]> receipts) throws IOException {
+        if (channel == null) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null && !Files.isDirectory(parent)) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer[] buffers = new ByteBuffer[receipts.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(receipts.get(i));
+        }
+        try {
+            while (buffers.length > 0 && buffers[buffers.length - 1].hasRemaining()) {
+                channel.write(buffers);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            FileChannel open = channel;
+            channel = null;
+            open.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "file " + file;
+    }
+}
@@ -0,0 +1,15 @@
+package printing;
+
+import java.io.IOException;
+import java.util.List;
+
+// Where encoded receipts go: a printer device, a network printer, or a file standing in for one.
+// Only the spooler's worker thread calls a sink, so implementations need not be thread-safe.
+public interface PrinterSink extends AutoCloseable {
+    // Writes the receipts, in order, as one batch. On failure the whole batch is retried,
+    // so a receipt may be printed twice but is never lost.
+    void write(List<byte[]> receipts) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,206 @@
+/**
+ * ReceiptSpooler prints receipts in the background so the till never waits for the printer.
+ *
+ * Orders are queued in a bounded queue; one worker thread renders and encodes them to ESC/POS,
+ * and writes whatever has queued up to the sink as one batch. A failed batch is retried with
+ * exponential backoff. While the printer is slow or jammed the queue fills, and once it is full
+ * new receipts are rejected straight away instead of blocking the till. Rejected or failed receipts
+ * can be reprinted from the order history, since every order is journaled before it is printed.
+ *
+ *   -Dcafepos.printer=file:<path>          append to a file or printer device (default: receipts/printer.escpos)
+ *   -Dcafepos.printer=socket:<host>[:port] send to a network printer, port 9100 by default
+ *   -Dcafepos.printer=none                 do not print
+ */
+
+package printing;
+
+import diagnostics.Metrics;
+import models.Order;
+import models.ReceiptRenderer;
+import storage.DataDirectory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class ReceiptSpooler implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final int DEFAULT_BATCH_SIZE = 16;
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF_MILLIS = 250;
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+    private static final int SOCKET_TIMEOUT_MILLIS = 5_000;
+
+    private static ReceiptSpooler shared;
+
+    private record Job(Order order, CompletableFuture<Void> printed) {
+    }
+
+    private final PrinterSink sink;
+    private final BlockingQueue<Job> queue;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Thread worker;
+    private volatile boolean closed;
+
+    public ReceiptSpooler(PrinterSink sink) {
+        this(sink, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    public ReceiptSpooler(PrinterSink sink, int capacity, int batchSize, int maxAttempts) {
+        if (capacity <= 0 || batchSize <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("Capacity, batch size and attempts must be greater than 0");
+        }
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.worker = new Thread(this::run, "receipt-spooler");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Returns the process-wide spooler for the printer configured with -Dcafepos.printer, or null for "none".
+    public static synchronized ReceiptSpooler shared() {
+        if (shared == null) {
+            PrinterSink sink = sinkFor(System.getProperty("cafepos.printer",
+                    "file:" + DataDirectory.resolve("receipts").resolve("printer.escpos")));
+            if (sink == null) {
+                return null;
+            }
+            shared = new ReceiptSpooler(sink);
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::close, "receipt-spooler-shutdown"));
+        }
+        return shared;
+    }
+
+    // Parses a printer setting: file:<path>, socket:<host>[:port] or none.
+    public static PrinterSink sinkFor(String setting) {
+        if (setting.equals("none")) {
+            return null;
+        }
+        if (setting.startsWith("file:")) {
+            return new FileSink(Path.of(setting.substring("file:".length())));
+        }
+        if (setting.startsWith("socket:")) {
+            String address = setting.substring("socket:".length());
+            int separator = address.lastIndexOf(':');
+            if (separator < 0) {
+                return new SocketSink(address, SocketSink.DEFAULT_PORT, SOCKET_TIMEOUT_MILLIS);
+            }
+            try {
+                return new SocketSink(address.substring(0, separator),
+                        Integer.parseInt(address.substring(separator + 1)), SOCKET_TIMEOUT_MILLIS);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid printer port: " + setting);
+            }
+        }
+        throw new IllegalArgumentException("Unknown printer setting: " + setting);
+    }
+
+    // Queues the order's receipt without waiting. The future completes once it has been sent to the printer,
+    // or fails if the queue is full (RejectedExecutionException) or every attempt to print failed.
+    public CompletableFuture<Void> submit(Order order) {
+        CompletableFuture<Void> printed = new CompletableFuture<>();
+        if (closed) {
+            printed.completeExceptionally(new RejectedExecutionException("The receipt printer is shut down"));
+        } else if (!queue.offer(new Job(order, printed))) {
+            Metrics.increment(Metrics.Counter.RECEIPTS_REJECTED);
+            printed.completeExceptionally(new RejectedExecutionException(
+                    "The receipt printer is behind: " + queue.size() + " receipts are waiting"));
+        }
+        return printed;
+    }
+
+    // Returns the number of receipts waiting to be printed.
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    public PrinterSink getSink() {
+        return sink;
+    }
+
+    // Stops accepting receipts, gives the worker a few seconds to print what is queued, and closes the sink.
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker.interrupt();
+    }
+
+    private void run() {
+        ReceiptRenderer renderer = new ReceiptRenderer();
+        EscPosEncoder encoder = new EscPosEncoder();
+        List<Job> batch = new ArrayList<>(batchSize);
+        List<byte[]> receipts = new ArrayList<>(batchSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Job first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                for (Job job : batch) {
+                    receipts.add(encoder.encode(renderer.render(job.order())));
+                }
+                print(batch, receipts);
+                batch.clear();
+                receipts.clear();
+            }
+        } catch (InterruptedException e) {
+            // Shutting down; anything still queued is reported as not printed.
+            failAll(batch, new IOException("The receipt printer was shut down"));
+        } finally {
+            List<Job> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            failAll(remaining, new IOException("The receipt printer was shut down"));
+            try {
+                sink.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close " + sink + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Writes the batch, retrying with exponential backoff, and completes every job's future.
+    private void print(List<Job> batch, List<byte[]> receipts) throws InterruptedException {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            try (Metrics.Timing timing = Metrics.start(Metrics.Timer.RECEIPT_PRINT, batch.size() + " receipts")) {
+                sink.write(receipts);
+                Metrics.add(Metrics.Counter.RECEIPTS_PRINTED, batch.size());
+                for (Job job : batch) {
+                    job.printed().complete(null);
+                }
+                return;
+            } catch (IOException e) {
+                if (attempt >= maxAttempts) {
+                    System.err.println("Giving up printing " + batch.size() + " receipts on " + sink + ": " + e.getMessage());
+                    failAll(batch, e);
+                    return;
+                }
+                System.err.println("Printing on " + sink + " failed, retrying in " + backoff + " ms: " + e.getMessage());
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private static void failAll(List<Job> jobs, IOException cause) {
+        Metrics.add(Metrics.Counter.RECEIPTS_FAILED, jobs.size());
+        for (Job job : jobs) {
+            job.printed().completeExceptionally(cause);
+        }
+        jobs.clear();
+    }
+}
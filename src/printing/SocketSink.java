@@ -0,0 +1,59 @@
+package printing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+// Sends receipts to a network printer's raw port (usually 9100), or to a local socket standing in for one.
+// The connection is kept open between batches and reopened on the next batch after a failure.
+public class SocketSink implements PrinterSink {
+    public static final int DEFAULT_PORT = 9100;
+
+    private final String host;
+    private final int port;
+    private final int timeoutMillis;
+    private Socket socket;
+    private OutputStream out;
+
+    public SocketSink(String host, int port, int timeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void write(List<byte[]> receipts) throws IOException {
+        try {
+            if (socket == null) {
+                socket = new Socket();
+                socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+                socket.setSoTimeout(timeoutMillis);
+                out = socket.getOutputStream();
+            }
+            for (byte[] receipt : receipts) {
+                out.write(receipt);
+            }
+            out.flush();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (socket != null) {
+            Socket open = socket;
+            socket = null;
+            out = null;
+            open.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "printer " + host + ":" + port;
+    }
+}
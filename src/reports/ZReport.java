@@ -0,0 +1,70 @@
+/**
+ * ZReport is an end-of-day (or end-of-shift) sales report: totals, breakdowns by category, product,
+ * hour and cashier, and the payment reconciliation. Build one with ZReportEngine.
+ */
+
+package reports;
+
+import models.Money;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+public record ZReport(long from, long to, ZoneId zone, int orders, long items,
+                      Money gross, Money discounts, Money net, Money payments, Money change,
+                      List<Row> byCategory, List<Row> byProduct, List<Row> byHour, List<Row> byCashier) {
+    // One line of a breakdown: how many orders included it, units sold, and amounts before and after discounts.
+    public record Row(String name, long orders, long quantity, Money gross, Money discount) {
+        public Money net() {
+            return gross.minus(discount);
+        }
+    }
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    // The cash that should be in the drawer: payments taken less change given.
+    public Money cashTaken() {
+        return payments.minus(change);
+    }
+
+    // Cash taken less the net sales; anything but zero means the records do not reconcile.
+    public Money reconciliationDifference() {
+        return cashTaken().minus(net);
+    }
+
+    // Lays the report out as fixed-width text, for the report dialog or a receipt printer.
+    public String format() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("                 ===== Z Report =====\n");
+        out.append("From: ").append(TIME_FORMAT.format(Instant.ofEpochMilli(from).atZone(zone)))
+                .append("   To: ").append(TIME_FORMAT.format(Instant.ofEpochMilli(to).atZone(zone))).append('\n');
+        out.append(String.format("%-24s %12d%n", "Orders:", orders));
+        out.append(String.format("%-24s %12d%n", "Items sold:", items));
+        out.append(String.format("%-24s %12s%n", "Gross sales:", "$" + gross));
+        out.append(String.format("%-24s %12s%n", "Discounts:", "$" + discounts));
+        out.append(String.format("%-24s %12s%n", "Net sales:", "$" + net));
+        section(out, "By Category", byCategory);
+        section(out, "By Product", byProduct);
+        section(out, "By Hour", byHour);
+        section(out, "By Cashier", byCashier);
+        out.append("\n--- Payment Reconciliation ---\n");
+        out.append(String.format("%-24s %12s%n", "Payments received:", "$" + payments));
+        out.append(String.format("%-24s %12s%n", "Change given:", "$" + change));
+        out.append(String.format("%-24s %12s%n", "Cash taken:", "$" + cashTaken()));
+        out.append(String.format("%-24s %12s%n", "Expected (net sales):", "$" + net));
+        out.append(String.format("%-24s %12s%n", "Difference:", "$" + reconciliationDifference()));
+        out.append("================================================");
+        return out.toString();
+    }
+
+    private static void section(StringBuilder out, String title, List<Row> rows) {
+        out.append("\n--- ").append(title).append(" ---\n");
+        out.append(String.format("%-20s %7s %7s %10s %10s %10s%n", "", "Orders", "Qty", "Gross", "Discount", "Net"));
+        for (Row row : rows) {
+            out.append(String.format("%-20s %7d %7d %10s %10s %10s%n", row.name(), row.orders(), row.quantity(),
+                    "$" + row.gross(), "$" + row.discount(), "$" + row.net()));
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ * ZReportEngine computes Z reports from a SalesLedger snapshot with fork/join parallelism.
+ * The order range is split into chunks of whole orders; each chunk aggregates its orders and their
+ * lines into flat arrays indexed by dictionary id, and chunks are merged by adding the arrays.
+ */
+
+package reports;
+
+import diagnostics.Metrics;
+import models.Money;
+import storage.ProductKey;
+import storage.SalesLedger;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public final class ZReportEngine {
+    // Orders per leaf task; small enough to spread a day over every core, large enough to amortize the arrays.
+    private static final int ORDERS_PER_TASK = 4096;
+    private static final int HOURS = 24;
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    private final ForkJoinPool pool;
+
+    public ZReportEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ZReportEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Reports on the calendar day in the zone.
+    public ZReport forDay(SalesLedger ledger, LocalDate day, ZoneId zone) {
+        long from = day.atStartOfDay(zone).toInstant().toEpochMilli();
+        long to = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        return compute(ledger.snapshot(), from, to, zone);
+    }
+
+    // Reports on orders with timestamps in [from, to), in epoch milliseconds, bucketing hours in the zone.
+    public ZReport compute(SalesLedger.Snapshot snapshot, long from, long to, ZoneId zone) {
+        int firstOrder = snapshot.firstOrderAtOrAfter(from);
+        int endOrder = snapshot.firstOrderAtOrAfter(to);
+        Totals totals;
+        try (Metrics.Timing timing = Metrics.start(Metrics.Timer.Z_REPORT)) {
+            totals = pool.invoke(new AggregateTask(snapshot, zone.getRules(), firstOrder, endOrder));
+        }
+
+        List<ZReport.Row> byHour = new ArrayList<>();
+        for (int hour = 0; hour < HOURS; hour++) {
+            if (totals.hourOrders[hour] > 0) {
+                byHour.add(new ZReport.Row(String.format("%02d:00-%02d:59", hour, hour), totals.hourOrders[hour],
+                        totals.hourQuantity[hour], Money.ofCents(totals.hourGross[hour]), Money.ofCents(totals.hourDiscount[hour])));
+            }
+        }
+        return new ZReport(from, to, zone, (int) totals.orders, totals.items,
+                Money.ofCents(totals.gross), Money.ofCents(totals.discounts), Money.ofCents(totals.net),
+                Money.ofCents(totals.payments), Money.ofCents(totals.change),
+                rows(snapshot.categories(), totals.categoryOrders, totals.categoryQuantity, totals.categoryGross, totals.categoryDiscount),
+                rows(snapshot.products().stream().map(ProductKey::label).toList(), totals.productOrders, totals.productQuantity, totals.productGross, totals.productDiscount),
+                byHour,
+                rows(snapshot.cashiers(), totals.cashierOrders, totals.cashierQuantity, totals.cashierGross, totals.cashierDiscount));
+    }
+
+    // Rows for every name with sales, highest net first.
+    private static List<ZReport.Row> rows(List<String> names, long[] orders, long[] quantity, long[] gross, long[] discount) {
+        List<ZReport.Row> rows = new ArrayList<>();
+        for (int id = 0; id < names.size(); id++) {
+            if (orders[id] > 0) {
+                rows.add(new ZReport.Row(names.get(id), orders[id], quantity[id], Money.ofCents(gross[id]), Money.ofCents(discount[id])));
+            }
+        }
+        rows.sort(Comparator.comparing(ZReport.Row::net).reversed().thenComparing(ZReport.Row::name));
+        return rows;
+    }
+
+    // Partial sums for a range of orders. Amounts are in cents.
+    private static final class Totals {
+        long orders;
+        long items;
+        long gross;
+        long discounts;
+        long net;
+        long payments;
+        long change;
+        final long[] categoryOrders, categoryQuantity, categoryGross, categoryDiscount;
+        final long[] productOrders, productQuantity, productGross, productDiscount;
+        final long[] cashierOrders, cashierQuantity, cashierGross, cashierDiscount;
+        final long[] hourOrders = new long[HOURS];
+        final long[] hourQuantity = new long[HOURS];
+        final long[] hourGross = new long[HOURS];
+        final long[] hourDiscount = new long[HOURS];
+
+        Totals(SalesLedger.Snapshot snapshot) {
+            int categories = snapshot.categories().size();
+            int products = snapshot.products().size();
+            int cashiers = snapshot.cashiers().size();
+            categoryOrders = new long[categories];
+            categoryQuantity = new long[categories];
+            categoryGross = new long[categories];
+            categoryDiscount = new long[categories];
+            productOrders = new long[products];
+            productQuantity = new long[products];
+            productGross = new long[products];
+            productDiscount = new long[products];
+            cashierOrders = new long[cashiers];
+            cashierQuantity = new long[cashiers];
+            cashierGross = new long[cashiers];
+            cashierDiscount = new long[cashiers];
+        }
+
+        void merge(Totals other) {
+            orders += other.orders;
+            items += other.items;
+            gross += other.gross;
+            discounts += other.discounts;
+            net += other.net;
+            payments += other.payments;
+            change += other.change;
+            add(categoryOrders, other.categoryOrders);
+            add(categoryQuantity, other.categoryQuantity);
+            add(categoryGross, other.categoryGross);
+            add(categoryDiscount, other.categoryDiscount);
+            add(productOrders, other.productOrders);
+            add(productQuantity, other.productQuantity);
+            add(productGross, other.productGross);
+            add(productDiscount, other.productDiscount);
+            add(cashierOrders, other.cashierOrders);
+            add(cashierQuantity, other.cashierQuantity);
+            add(cashierGross, other.cashierGross);
+            add(cashierDiscount, other.cashierDiscount);
+            add(hourOrders, other.hourOrders);
+            add(hourQuantity, other.hourQuantity);
+            add(hourGross, other.hourGross);
+            add(hourDiscount, other.hourDiscount);
+        }
+
+        private static void add(long[] into, long[] from) {
+            for (int i = 0; i < into.length; i++) {
+                into[i] += from[i];
+            }
+        }
+    }
+
+    private static final class AggregateTask extends RecursiveTask<Totals> {
+        private final SalesLedger.Snapshot snapshot;
+        private final ZoneRules zoneRules;
+        private final int fromOrder;
+        private final int toOrder;
+
+        AggregateTask(SalesLedger.Snapshot snapshot, ZoneRules zoneRules, int fromOrder, int toOrder) {
+            this.snapshot = snapshot;
+            this.zoneRules = zoneRules;
+            this.fromOrder = fromOrder;
+            this.toOrder = toOrder;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (toOrder - fromOrder <= ORDERS_PER_TASK) {
+                return aggregate();
+            }
+            int middle = (fromOrder + toOrder) >>> 1;
+            AggregateTask left = new AggregateTask(snapshot, zoneRules, fromOrder, middle);
+            left.fork();
+            Totals totals = new AggregateTask(snapshot, zoneRules, middle, toOrder).compute();
+            totals.merge(left.join());
+            return totals;
+        }
+
+        private Totals aggregate() {
+            Totals totals = new Totals(snapshot);
+            SalesLedger.Snapshot s = snapshot;
+            // The zone offset only changes at transitions, so it is looked up again only when the hour changes.
+            long offsetValidFrom = Long.MAX_VALUE;
+            long offsetValidTo = Long.MIN_VALUE;
+            long offsetMillis = 0;
+            for (int order = fromOrder; order < toOrder; order++) {
+                long timestamp = s.orderTimestamps()[order];
+                if (timestamp < offsetValidFrom || timestamp >= offsetValidTo) {
+                    offsetMillis = zoneRules.getOffset(Instant.ofEpochMilli(timestamp)).getTotalSeconds() * 1000L;
+                    offsetValidFrom = timestamp - Math.floorMod(timestamp, MILLIS_PER_HOUR);
+                    offsetValidTo = offsetValidFrom + MILLIS_PER_HOUR;
+                }
+                int hour = (int) (Math.floorMod(timestamp + offsetMillis, MILLIS_PER_DAY) / MILLIS_PER_HOUR);
+                int cashier = s.orderCashiers()[order];
+                long subtotal = s.orderSubtotals()[order];
+                long discount = s.orderDiscounts()[order];
+
+                long quantity = 0;
+                int endLine = s.firstLine(order + 1);
+                for (int line = s.firstLine(order); line < endLine; line++) {
+                    int lineQuantity = s.lineQuantities()[line];
+                    long lineGross = lineQuantity * s.lineUnitPrices()[line];
+                    long lineDiscount = s.lineDiscounts()[line];
+                    int product = s.lineProducts()[line];
+                    int category = s.lineCategories()[line];
+                    quantity += lineQuantity;
+                    totals.productQuantity[product] += lineQuantity;
+                    totals.productGross[product] += lineGross;
+                    totals.productDiscount[product] += lineDiscount;
+                    totals.productOrders[product]++;
+                    // Counts an order once per category, however many of its lines are in it.
+                    if (!categorySeenEarlier(s, order, line, category)) {
+                        totals.categoryOrders[category]++;
+                    }
+                    totals.categoryQuantity[category] += lineQuantity;
+                    totals.categoryGross[category] += lineGross;
+                    totals.categoryDiscount[category] += lineDiscount;
+                }
+
+                totals.orders++;
+                totals.items += quantity;
+                totals.gross += subtotal;
+                totals.discounts += discount;
+                totals.net += s.orderTotals()[order];
+                totals.payments += s.orderPayments()[order];
+                totals.change += s.orderChanges()[order];
+                totals.cashierOrders[cashier]++;
+                totals.cashierQuantity[cashier] += quantity;
+                totals.cashierGross[cashier] += subtotal;
+                totals.cashierDiscount[cashier] += discount;
+                totals.hourOrders[hour]++;
+                totals.hourQuantity[hour] += quantity;
+                totals.hourGross[hour] += subtotal;
+                totals.hourDiscount[hour] += discount;
+            }
+            return totals;
+        }
+
+        // Orders have a handful of lines, so a backwards scan is cheaper than a per-order set.
+        private static boolean categorySeenEarlier(SalesLedger.Snapshot s, int order, int line, int category) {
+            for (int earlier = s.firstLine(order); earlier < line; earlier++) {
+                if (s.lineCategories()[earlier] == category) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * CheckoutClient calls a CheckoutServer over HTTP, for remote terminals and tests.
+ * Errors are raised as the same exceptions CheckoutService throws in-process:
+ * NoSuchElementException for an unknown session and IllegalArgumentException for a rejected request.
+ */
+
+package services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import models.Money;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+
+public class CheckoutClient {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final HttpClient http;
+    private final URI baseUri;
+
+    // Creates a client for the server at the given base URI, e.g. http://localhost:8085
+    public CheckoutClient(URI baseUri) {
+        this.baseUri = baseUri;
+        this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    }
+
+    // Opens a session for the cashier and returns its ID.
+    public String openSession(String cashier) {
+        return send("POST", "/sessions?cashier=" + encode(cashier)).get("session").asText();
+    }
+
+    public void closeSession(String sessionId) {
+        send("DELETE", "/sessions/" + sessionId);
+    }
+
+    // Returns the cart as {"lines": [...], "itemCount", "subtotal", "discountedTotal"}.
+    public JsonNode getCart(String sessionId) {
+        return send("GET", "/sessions/" + sessionId + "/cart");
+    }
+
+    public JsonNode addItem(String sessionId, String product, int quantity) {
+        return send("POST", "/sessions/" + sessionId + "/items?product=" + encode(product) + "&quantity=" + quantity);
+    }
+
+    public JsonNode updateQuantity(String sessionId, int index, int quantity) {
+        return send("PUT", "/sessions/" + sessionId + "/items/" + index + "?quantity=" + quantity);
+    }
+
+    public JsonNode removeItem(String sessionId, int index) {
+        return send("DELETE", "/sessions/" + sessionId + "/items/" + index);
+    }
+
+    public JsonNode clearCart(String sessionId) {
+        return send("DELETE", "/sessions/" + sessionId + "/items");
+    }
+
+    public Money getTotal(String sessionId) {
+        return Money.parse(getCart(sessionId).get("subtotal").asText());
+    }
+
+    // Checks out the cart; returns the order number, totals and the rendered "bill".
+    public JsonNode generateBill(String sessionId, Money payment, double discountPercentage) {
+        return send("POST", "/sessions/" + sessionId + "/bill?payment=" + payment + "&discount=" + discountPercentage);
+    }
+
+    private JsonNode send(String method, String pathAndQuery) {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(pathAndQuery))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        try {
+            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            JsonNode body = mapper.readTree(response.body());
+            if (response.statusCode() == 404) {
+                throw new NoSuchElementException(body.path("error").asText());
+            }
+            if (response.statusCode() >= 400) {
+                throw new IllegalArgumentException(body.path("error").asText());
+            }
+            return body;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Checkout request failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Checkout request interrupted", e);
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value == null ? "" : value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,334 @@
+/**
+ * CheckoutServer exposes CheckoutService over a small local HTTP API, one virtual thread per request.
+ *
+ *   POST   /sessions?cashier=NAME                          open a session      -> {"session": ID}
+ *   DELETE /sessions/ID                                    close a session
+ *   GET    /sessions/ID/cart                               the cart and its totals
+ *   POST   /sessions/ID/items?product=NAME&quantity=N      add an item         -> the cart
+ *          (&category=NAME picks the product when several categories have one by that name)
+ *   PUT    /sessions/ID/items/INDEX?quantity=N             change a quantity   -> the cart
+ *   DELETE /sessions/ID/items/INDEX                        remove a line       -> the cart
+ *   DELETE /sessions/ID/items                              clear the cart      -> the cart
+ *   POST   /sessions/ID/bill?payment=AMOUNT&discount=PCT   check out           -> the order and bill
+ *
+ * Invalid requests get a 400 and unknown sessions a 404, both with {"error": message}.
+ *
+ * There is no authentication, so the server only listens on the loopback interface unless another
+ * address is set explicitly with -Dcafepos.server.bind=<address>, e.g. 0.0.0.0 to serve tablets on the LAN.
+ */
+
+package services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import diagnostics.Diagnostics;
+import com.sun.net.httpserver.HttpServer;
+import models.CartItem;
+import models.CartManager;
+import models.Money;
+import models.Order;
+import models.Product;
+import storage.CatalogWatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class CheckoutServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8085;
+    private static final String SESSIONS = "/sessions";
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    // Signals a malformed request that maps to an HTTP status other than 400.
+    private static final class HttpError extends RuntimeException {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // Writes the JSON body of a response.
+    private interface JsonBody {
+        void write(JsonGenerator json) throws IOException;
+    }
+
+    private final CheckoutService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // Starts serving the checkout service on the given loopback port; port 0 picks a free one.
+    public CheckoutServer(CheckoutService service, int port) throws IOException {
+        this(service, InetAddress.getLoopbackAddress(), port);
+    }
+
+    // Starts serving the checkout service on the given address and port.
+    public CheckoutServer(CheckoutService service, InetAddress address, int port) throws IOException {
+        this.service = service;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.createContext(SESSIONS, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Returns the address set with -Dcafepos.server.bind, or the loopback address if none is set.
+    public static InetAddress configuredAddress() throws UnknownHostException {
+        String bind = System.getProperty("cafepos.server.bind");
+        return bind == null || bind.isBlank() ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind.trim());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    // Runs the checkout server against the shared store until the process is stopped.
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("cafepos.server.port", DEFAULT_PORT);
+        Diagnostics.start();
+        CatalogWatcher.start();
+        new CheckoutServer(CheckoutService.shared(), configuredAddress(), port);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                String rawPath = exchange.getRequestURI().getPath();
+                String rest = rawPath.substring(SESSIONS.length());
+                // The context matches any path starting with "/sessions", e.g. "/sessionsX" too.
+                if (!rest.isEmpty() && !rest.startsWith("/")) {
+                    throw new HttpError(404, "Unknown path: " + rawPath);
+                }
+                String[] path = rest.split("/");
+                Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                route(exchange, exchange.getRequestMethod(), path, query);
+            } catch (NoSuchElementException e) {
+                sendError(exchange, 404, e.getMessage());
+            } catch (HttpError e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                // E.g. the journal failing to save an order; the terminal gets an answer instead of a dropped connection.
+                System.err.println("Checkout server failed on " + exchange.getRequestMethod() + " "
+                        + exchange.getRequestURI() + ": " + e);
+                sendError(exchange, 500, "Internal server error");
+            }
+        }
+    }
+
+    // path[0] is empty; path[1] is the session ID, path[2] the resource and path[3] a line index.
+    private void route(HttpExchange exchange, String method, String[] path, Map<String, String> query) throws IOException {
+        if (path.length <= 1) {
+            requireMethod(method, "POST");
+            String cashier = query.get("cashier");
+            String sessionId = service.openSession(cashier == null || cashier.isBlank() ? null : cashier);
+            send(exchange, 201, json -> json.writeStringField("session", sessionId));
+            return;
+        }
+        String sessionId = path[1];
+        String resource = path.length > 2 ? path[2] : "";
+        // Only items takes a further segment, the line index.
+        if (path.length > (resource.equals("items") ? 4 : 3)) {
+            throw new HttpError(404, "Unknown path: " + exchange.getRequestURI().getPath());
+        }
+        switch (resource) {
+            case "" -> {
+                requireMethod(method, "DELETE");
+                service.getCart(sessionId);
+                service.closeSession(sessionId);
+                send(exchange, 200, json -> json.writeStringField("closed", sessionId));
+            }
+            case "cart" -> {
+                requireMethod(method, "GET");
+                sendCart(exchange, sessionId);
+            }
+            case "items" -> {
+                if (path.length > 3) {
+                    int index = parseInt(path[3], "line index");
+                    if (method.equals("PUT")) {
+                        service.updateQuantity(sessionId, index, parseInt(required(query, "quantity"), "quantity"));
+                    } else {
+                        requireMethod(method, "DELETE");
+                        service.removeItem(sessionId, index);
+                    }
+                } else if (method.equals("DELETE")) {
+                    service.clearCart(sessionId);
+                } else {
+                    requireMethod(method, "POST");
+                    String product = required(query, "product");
+                    int quantity = parseInt(query.getOrDefault("quantity", "1"), "quantity");
+                    String category = query.get("category");
+                    if (category == null) {
+                        service.addItem(sessionId, product, quantity);
+                    } else {
+                        Product match = service.getCatalog().find(category, product);
+                        if (match == null) {
+                            throw new IllegalArgumentException("Item not found in product database: " + category + " / " + product);
+                        }
+                        service.addItem(sessionId, match.getSku(), quantity);
+                    }
+                }
+                sendCart(exchange, sessionId);
+            }
+            case "bill" -> {
+                requireMethod(method, "POST");
+                Money payment = parseMoney(required(query, "payment"));
+                double discount = parseDiscount(query.getOrDefault("discount", "0"));
+                CheckoutService.CheckoutResult result = service.checkout(sessionId, payment, discount);
+                // Remote terminals only get their answer once the order is on disk.
+                result.saved().join();
+                send(exchange, 200, json -> {
+                    json.writeNumberField("orderNumber", result.order().orderNumber());
+                    json.writeStringField("subtotal", result.order().subtotal().toString());
+                    writePromotions(json, result.order().promotions());
+                    json.writeStringField("discount", result.order().discount().toString());
+                    json.writeStringField("total", result.order().total().toString());
+                    json.writeStringField("payment", result.order().payment().toString());
+                    json.writeStringField("change", result.order().change().toString());
+                    json.writeStringField("bill", result.bill());
+                });
+            }
+            default -> throw new HttpError(404, "Unknown resource: " + resource);
+        }
+    }
+
+    // Sends the cart lines and totals, read under the session lock so they are consistent.
+    private void sendCart(HttpExchange exchange, String sessionId) throws IOException {
+        byte[] body = service.withCart(sessionId, cart -> {
+            try {
+                return render(json -> writeCart(json, cart));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        send(exchange, 200, body);
+    }
+
+    private static void writeCart(JsonGenerator json, CartManager cart) throws IOException {
+        json.writeArrayFieldStart("lines");
+        for (CartItem item : cart.getCartItems()) {
+            json.writeStartObject();
+            json.writeStringField("name", item.getName());
+            json.writeNumberField("quantity", item.getQuantity());
+            json.writeStringField("price", item.getPrice().toString());
+            json.writeStringField("total", item.getTotal().toString());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeNumberField("itemCount", cart.getItemCount());
+        json.writeStringField("subtotal", cart.getTotal().toString());
+        writePromotions(json, cart.getPromotions());
+        json.writeStringField("discountedTotal", cart.getDiscountedTotal().toString());
+    }
+
+    private static void writePromotions(JsonGenerator json, List<Order.Promotion> promotions) throws IOException {
+        json.writeArrayFieldStart("promotions");
+        for (Order.Promotion promotion : promotions) {
+            json.writeStartObject();
+            json.writeStringField("name", promotion.name());
+            json.writeStringField("discount", promotion.discount().toString());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) {
+            throw new HttpError(405, "Method not allowed: " + method);
+        }
+    }
+
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static Money parseMoney(String value) {
+        try {
+            return Money.parse(value);
+        } catch (NumberFormatException e) {
+            // Money.parse rejects overlong text and out-of-range exponents before doing any arithmetic.
+            throw new IllegalArgumentException("Invalid payment amount: " + value);
+        }
+    }
+
+    private static double parseDiscount(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid discount percentage: " + value);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator >= 0 ? pair.substring(0, separator) : pair;
+            String value = separator >= 0 ? pair.substring(separator + 1) : "";
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, json -> json.writeStringField("error", message));
+    }
+
+    private static void send(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        send(exchange, status, render(body));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] render(JsonBody body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (JsonGenerator json = jsonFactory.createGenerator(bytes)) {
+            json.writeStartObject();
+            body.write(json);
+            json.writeEndObject();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * CheckoutService is the headless checkout backend. It keeps one cart per session, keyed by session ID,
+ * so several terminals (the JavaFX till, tablets over HTTP, tests) can ring up orders against one store.
+ *
+ * Each session has its own lock: requests for the same session run one at a time, while different
+ * sessions never wait on each other. Stock, order numbers and the journal are shared store-wide.
+ *
+ * A till that rotates cashiers parks each cashier's session when they step away; resumeSession
+ * hands the same session, cart and all, back to them at their next login.
+ *
+ * Each paid order goes straight to the kitchen queue, if one is attached, for the baristas and bakery.
+ * With an outbox attached, each order is also handed to it for head office once it is journaled.
+ */
+
+package services;
+
+import diagnostics.Metrics;
+import kitchen.KitchenQueue;
+import models.CartManager;
+import models.Catalog;
+import models.Inventory;
+import models.Money;
+import models.Order;
+import storage.OrderJournal;
+import sync.OrderOutbox;
+
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class CheckoutService {
+    // A completed checkout: the order, its rendered bill, and a future that completes once it is journaled.
+    public record CheckoutResult(Order order, String bill, CompletableFuture<Void> saved) {
+    }
+
+    private static final class Session {
+        final ReentrantLock lock = new ReentrantLock();
+        final CartManager cart;
+        volatile String cashier;
+
+        Session(CartManager cart, String cashier) {
+            this.cart = cart;
+            this.cashier = cashier;
+        }
+    }
+
+    private static CheckoutService shared;
+
+    private final Supplier<Catalog> catalog;
+    private final Inventory inventory;
+    private final OrderJournal journal;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    // Each cashier's parked (or active) session on this till.
+    private final ConcurrentHashMap<String, String> cashierSessions = new ConcurrentHashMap<>();
+    // Ships journaled orders to head office, or null if sync is off.
+    private volatile OrderOutbox outbox;
+    // Sends paid orders to the preparation stations, or null if there are none.
+    private volatile KitchenQueue kitchen;
+
+    public CheckoutService(Catalog catalog, Inventory inventory, OrderJournal journal) {
+        this(() -> catalog, inventory, journal);
+    }
+
+    // A service whose carts look products up in whichever catalog the supplier returns.
+    public CheckoutService(Supplier<Catalog> catalog, Inventory inventory, OrderJournal journal) {
+        this.catalog = catalog;
+        this.inventory = inventory;
+        this.journal = journal;
+    }
+
+    // Returns the process-wide service over the shared catalog (following its new versions), inventory and journal.
+    public static synchronized CheckoutService shared() {
+        if (shared == null) {
+            shared = new CheckoutService(Catalog::shared, Inventory.shared(), OrderJournal.shared());
+            shared.setOutbox(OrderOutbox.shared());
+            shared.setKitchen(KitchenQueue.shared());
+        }
+        return shared;
+    }
+
+    // Returns the current catalog version.
+    public Catalog getCatalog() {
+        return catalog.get();
+    }
+
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    public OrderJournal getJournal() {
+        return journal;
+    }
+
+    public OrderOutbox getOutbox() {
+        return outbox;
+    }
+
+    // Sends every order journaled from now on to the outbox; null turns sync off.
+    public void setOutbox(OrderOutbox outbox) {
+        this.outbox = outbox;
+    }
+
+    public KitchenQueue getKitchen() {
+        return kitchen;
+    }
+
+    // Sends every order paid from now on to the kitchen queue; null stops sending them.
+    public void setKitchen(KitchenQueue kitchen) {
+        this.kitchen = kitchen;
+    }
+
+    // Opens a new session with an empty cart for the cashier and returns its ID.
+    public String openSession(String cashier) {
+        String sessionId = UUID.randomUUID().toString();
+        sessions.put(sessionId, new Session(new CartManager(catalog, inventory), cashier));
+        return sessionId;
+    }
+
+    // Returns the cashier's parked session, opening a new one if they have none.
+    public String resumeSession(String cashier) {
+        return cashierSessions.compute(cashier, (name, sessionId) ->
+                sessionId != null && sessions.containsKey(sessionId) ? sessionId : openSession(name));
+    }
+
+    // Closes the session, returning any stock still reserved by its cart.
+    public void closeSession(String sessionId) {
+        cashierSessions.values().remove(sessionId);
+        Session session = sessions.remove(sessionId);
+        if (session != null) {
+            updateLocked(session, CartManager::clearCart);
+        }
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    // Returns the session's cart, e.g. for a view to observe.
+    // A cart shown in a JavaFX view must only be changed through this service on the FX thread.
+    public CartManager getCart(String sessionId) {
+        return session(sessionId).cart;
+    }
+
+    public String getCashier(String sessionId) {
+        return session(sessionId).cashier;
+    }
+
+    // Sets the cashier recorded on orders checked out from this session.
+    public void setCashier(String sessionId, String cashier) {
+        session(sessionId).cashier = cashier;
+    }
+
+    public void addItem(String sessionId, String product, int quantity) {
+        try (Metrics.Timing timing = Metrics.start(Metrics.Timer.ADD_ITEM, product)) {
+            updateCart(sessionId, cart -> cart.addItem(product, quantity));
+        } catch (IllegalArgumentException e) {
+            Metrics.increment(Metrics.Counter.ADD_ITEM_REJECTED);
+            throw e;
+        }
+        Metrics.add(Metrics.Counter.ITEMS_ADDED, quantity);
+    }
+
+    public void addItem(String sessionId, int sku, int quantity) {
+        try (Metrics.Timing timing = Metrics.start(Metrics.Timer.ADD_ITEM)) {
+            updateCart(sessionId, cart -> cart.addItem(sku, quantity));
+        } catch (IllegalArgumentException e) {
+            Metrics.increment(Metrics.Counter.ADD_ITEM_REJECTED);
+            throw e;
+        }
+        Metrics.add(Metrics.Counter.ITEMS_ADDED, quantity);
+    }
+
+    public void updateQuantity(String sessionId, int index, int quantity) {
+        updateCart(sessionId, cart -> cart.updateQuantity(index, quantity));
+    }
+
+    public void removeItem(String sessionId, int index) {
+        updateCart(sessionId, cart -> cart.removeItem(index));
+    }
+
+    public void clearCart(String sessionId) {
+        updateCart(sessionId, CartManager::clearCart);
+    }
+
+    public void setDiscountPercentage(String sessionId, double discountPercentage) {
+        updateCart(sessionId, cart -> cart.setDiscountPercentage(discountPercentage));
+    }
+
+    public Money getTotal(String sessionId) {
+        return withCart(sessionId, CartManager::getTotal);
+    }
+
+    // Checks out the session's cart and journals the order.
+    public CheckoutResult checkout(String sessionId, Money payment, double discountPercentage) {
+        Session session = session(sessionId);
+        CheckoutResult result;
+        try (Metrics.Timing timing = Metrics.start(Metrics.Timer.BILL)) {
+            result = withLock(session, cart -> {
+                // A declined or empty checkout throws before taking an order number, so numbers have no gaps.
+                Order order = cart.prepareOrder(journal::nextOrderNumber, session.cashier, payment, discountPercentage);
+                Metrics.Timing journalWrite = Metrics.start(Metrics.Timer.JOURNAL_WRITE);
+                CompletableFuture<Void> saved;
+                try {
+                    saved = journal.append(order);
+                } catch (RuntimeException e) {
+                    // The cart and its reserved stock are untouched, so the cashier can try again.
+                    journalWrite.close();
+                    throw e;
+                }
+                saved.whenComplete((ignored, error) -> journalWrite.close());
+                cart.completeOrder();
+                return new CheckoutResult(order, cart.renderBill(order), saved);
+            });
+        }
+        Metrics.increment(Metrics.Counter.ORDERS);
+        KitchenQueue stations = kitchen;
+        if (stations != null) {
+            // Like head office, the stations only get orders that are safely on disk, so staff never
+            // prepare an order the journal failed to record. The group commit adds at most one fsync.
+            result.saved().thenRun(() -> {
+                if (!stations.publish(result.order())) {
+                    System.err.println("Kitchen queue is full; order #" + result.order().orderNumber()
+                            + " was not sent to the stations");
+                }
+            });
+        }
+        OrderOutbox sync = outbox;
+        if (sync != null) {
+            // Only orders that are safely on disk go to head office; queuing never blocks.
+            result.saved().thenRun(() -> sync.submit(result.order()));
+        }
+        return result;
+    }
+
+    // Checks out the session's cart and returns the rendered bill.
+    public String generateBill(String sessionId, Money payment, double discountPercentage) {
+        return checkout(sessionId, payment, discountPercentage).bill();
+    }
+
+    // Runs the operation on the session's cart while holding the session lock.
+    public <T> T withCart(String sessionId, Function<CartManager, T> operation) {
+        return withLock(session(sessionId), operation);
+    }
+
+    private void updateCart(String sessionId, Consumer<CartManager> operation) {
+        updateLocked(session(sessionId), operation);
+    }
+
+    private Session session(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            throw new NoSuchElementException("Unknown session: " + sessionId);
+        }
+        return session;
+    }
+
+    private static <T> T withLock(Session session, Function<CartManager, T> operation) {
+        session.lock.lock();
+        try {
+            return operation.apply(session.cart);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    private static void updateLocked(Session session, Consumer<CartManager> operation) {
+        session.lock.lock();
+        try {
+            operation.accept(session.cart);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+}
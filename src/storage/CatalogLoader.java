@@ -0,0 +1,192 @@
+/**
+ * CatalogLoader reads the product catalog, preferring a binary snapshot over re-parsing the JSON.
+ * The JSON is read with Jackson's token-level parser, one product at a time, and each product is
+ * validated as it is read, so memory and time grow only with the products themselves.
+ */
+
+package storage;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import diagnostics.Metrics;
+import models.Catalog;
+import models.Money;
+import models.Product;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class CatalogLoader {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private CatalogLoader() {
+    }
+
+    // Returns the catalog file that overrides the bundled one, and is watched for changes:
+    // -Dcafepos.catalog=<path>, or products.json in the data directory. It need not exist.
+    public static Path catalogFile() {
+        String configured = System.getProperty("cafepos.catalog");
+        return configured != null ? Path.of(configured) : DataDirectory.root().resolve("products.json");
+    }
+
+    // Loads the catalog file if there is one, otherwise the bundled /products.json.
+    public static Catalog loadShared() {
+        Path file = catalogFile();
+        return Files.isRegularFile(file) ? loadFile(file) : loadResource("/products.json");
+    }
+
+    // Loads the catalog resource, using the snapshot in the data directory when it matches the resource.
+    // This also throws a run time exception if loading fails.
+    public static Catalog loadResource(String resource) {
+        URL url = CatalogLoader.class.getResource(resource);
+        if (url == null) {
+            throw new IllegalStateException(resource.substring(1) + " not found");
+        }
+        return load(url, resource);
+    }
+
+    // Loads and validates the catalog file, using the snapshot when it matches the file.
+    // This also throws a run time exception if loading fails.
+    public static Catalog loadFile(Path file) {
+        try {
+            return load(file.toUri().toURL(), file.toString());
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid catalog path: " + file, e);
+        }
+    }
+
+    // Parses the catalog file afresh, bypassing the snapshot, e.g. when it has just been changed.
+    // Throws IOException or IllegalArgumentException if it cannot be read or a product is invalid.
+    public static Catalog parseFile(Path file) throws IOException {
+        try (Metrics.Timing timing = Metrics.start(Metrics.Timer.CATALOG_LOAD, "reload " + file);
+             InputStream inputStream = Files.newInputStream(file)) {
+            return new Catalog(parse(inputStream));
+        }
+    }
+
+    private static Catalog load(URL url, String detail) {
+        Path snapshot = DataDirectory.resolve("cache").resolve("catalog.bin");
+        try (Metrics.Timing timing = Metrics.start(Metrics.Timer.CATALOG_LOAD, detail)) {
+            return new Catalog(load(url, snapshot));
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Failed to load products: " + e.getMessage(), e);
+        }
+    }
+
+    // Returns the products from the snapshot if it was written from the same source,
+    // otherwise parses the JSON and writes a fresh snapshot for the next start.
+    public static List<Product> load(URL source, Path snapshot) throws IOException {
+        long sourceStamp = stamp(source);
+        List<Product> products = CatalogSnapshot.read(snapshot, sourceStamp);
+        if (products != null) {
+            return products;
+        }
+        try (InputStream inputStream = source.openStream()) {
+            products = parse(inputStream);
+        }
+        try {
+            CatalogSnapshot.write(snapshot, sourceStamp, products);
+        } catch (IOException e) {
+            System.err.println("Failed to write catalog snapshot: " + e.getMessage());
+        }
+        return products;
+    }
+
+    // Streams a JSON array of products, validating each one as it is read.
+    // Unknown fields are skipped.
+    public static List<Product> parse(InputStream inputStream) throws IOException {
+        List<Product> products = new ArrayList<>();
+        try (JsonParser parser = jsonFactory.createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of products");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                products.add(parseProduct(parser, products.size()));
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new IllegalArgumentException("Expected a product object at index " + products.size());
+            }
+        }
+        return products;
+    }
+
+    private static Product parseProduct(JsonParser parser, int index) throws IOException {
+        Product product = new Product();
+        // A product without a price would otherwise go on sale at Product's default of zero.
+        boolean priced = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "name" -> product.setName(text(parser, value, field, index));
+                case "category" -> product.setCategory(text(parser, value, field, index));
+                case "image" -> product.setImage(text(parser, value, field, index));
+                case "price" -> {
+                    if (!value.isNumeric()) {
+                        throw invalid(index, "price must be a number");
+                    }
+                    // The literal text keeps the price exact instead of going through double.
+                    product.setPrice(Money.parse(parser.getText()));
+                    priced = true;
+                }
+                case "quantity" -> {
+                    if (value != JsonToken.VALUE_NUMBER_INT) {
+                        throw invalid(index, "quantity must be a whole number");
+                    }
+                    product.setQuantity(parser.getIntValue());
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        validate(product, index);
+        if (!priced) {
+            throw invalid(index, "price is required for " + product.getName());
+        }
+        return product;
+    }
+
+    private static String text(JsonParser parser, JsonToken value, String field, int index) throws IOException {
+        if (value != JsonToken.VALUE_STRING) {
+            throw invalid(index, field + " must be a string");
+        }
+        return parser.getText();
+    }
+
+    static void validate(Product product, int index) {
+        if (product.getName() == null || product.getName().isBlank()) {
+            throw invalid(index, "name is required");
+        }
+        if (product.getCategory() == null || product.getCategory().isBlank()) {
+            throw invalid(index, "category is required for " + product.getName());
+        }
+        if (product.getPrice().isNegative()) {
+            throw invalid(index, "price must not be negative for " + product.getName());
+        }
+        if (product.getQuantity() < 0 && product.getQuantity() != Product.UNTRACKED) {
+            throw invalid(index, "quantity must not be negative for " + product.getName());
+        }
+    }
+
+    private static IllegalArgumentException invalid(int index, String message) {
+        return new IllegalArgumentException("Invalid product at index " + index + ": " + message);
+    }
+
+    // Identifies a version of the source by its location, size and modification time.
+    private static long stamp(URL source) throws IOException {
+        URLConnection connection = source.openConnection();
+        long stamp = source.toExternalForm().hashCode();
+        stamp = stamp * 31 + connection.getContentLengthLong();
+        stamp = stamp * 31 + connection.getLastModified();
+        connection.getInputStream().close();
+        return stamp;
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * CatalogSnapshot is a compact binary copy of the parsed catalog, read on startup
+ * instead of re-parsing the JSON. The layout is a header (magic, version, source stamp, product count),
+ * one record per product and a trailing CRC32C over everything before it.
+ *
+ * The file is read into a heap buffer rather than memory-mapped: on Windows a live mapping keeps the file
+ * from being replaced, which would break the atomic move of the next write.
+ */
+
+package storage;
+
+import models.Money;
+import models.Product;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+final class CatalogSnapshot {
+    private static final int MAGIC = 0x43504353; // "CPCS"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 20;
+
+    private CatalogSnapshot() {
+    }
+
+    // Returns the snapshot's products, or null if it is missing, corrupt, or was written from another source.
+    static List<Product> read(Path path, long sourceStamp) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + Integer.BYTES || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    // Truncated since its size was read; the next write replaces it.
+                    return null;
+                }
+            }
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != sourceStamp) {
+                return null;
+            }
+            int checksumPosition = (int) size - Integer.BYTES;
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, checksumPosition));
+            if ((int) crc.getValue() != buffer.getInt(checksumPosition)) {
+                System.err.println("Ignoring corrupt catalog snapshot: " + path);
+                return null;
+            }
+            int count = buffer.getInt(16);
+            ByteBuffer records = buffer.slice(HEADER_BYTES, checksumPosition - HEADER_BYTES);
+            List<Product> products = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Product product = new Product();
+                product.setName(getString(records));
+                product.setCategory(getString(records));
+                product.setImage(getString(records));
+                product.setPrice(Money.ofCents(records.getLong()));
+                product.setQuantity(records.getInt());
+                products.add(product);
+            }
+            return products;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            System.err.println("Ignoring unreadable catalog snapshot: " + path);
+            return null;
+        }
+    }
+
+    // Writes the snapshot to a temporary file and moves it into place, so readers never see a partial file.
+    static void write(Path path, long sourceStamp, List<Product> products) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (OutputStream file = Files.newOutputStream(temporary);
+             CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file), crc);
+             DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceStamp);
+            out.writeInt(products.size());
+            for (Product product : products) {
+                putString(out, product.getName());
+                putString(out, product.getCategory());
+                putString(out, product.getImage());
+                out.writeLong(product.getPrice().cents());
+                out.writeInt(product.getQuantity());
+            }
+            out.flush();
+            // The checksum goes straight to the file so it does not include itself.
+            int checksum = (int) crc.getValue();
+            file.write(new byte[]{(byte) (checksum >>> 24), (byte) (checksum >>> 16),
+                    (byte) (checksum >>> 8), (byte) checksum});
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void putString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
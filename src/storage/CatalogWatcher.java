@@ -0,0 +1,149 @@
+/**
+ * CatalogWatcher reloads the catalog while the till is running, whenever the catalog file changes
+ * (see CatalogLoader.catalogFile).
+ *
+ * A daemon thread watches the file's directory. After a change it waits for writes to settle, then
+ * parses and validates the file, and builds the new version's search index and promotions, all off
+ * the FX thread. Only then is the version published, in one atomic swap (see Catalog.publish).
+ * A file that fails to parse or validate is reported and the current catalog stays in use.
+ *
+ * Editors that save by writing a new file and renaming it over the old one are handled too, since
+ * the directory rather than the file is watched.
+ */
+
+package storage;
+
+import diagnostics.Metrics;
+import models.Catalog;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+public final class CatalogWatcher implements AutoCloseable {
+    // How long the file must go without changes before it is reloaded, so a half-written file is not read.
+    private static final long SETTLE_MILLIS = 250;
+
+    private static CatalogWatcher shared;
+
+    private final Path file;
+    private final WatchService watchService;
+    private final Thread worker;
+    private FileTime lastLoaded;
+    private volatile boolean closed;
+
+    public CatalogWatcher(Path file) throws IOException {
+        this.file = file.toAbsolutePath();
+        Path directory = this.file.getParent();
+        Files.createDirectories(directory);
+        this.watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.lastLoaded = modified();
+        this.worker = new Thread(this::run, "catalog-watcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Starts watching the catalog file for the shared catalog, once per process.
+    // Disabled with -Dcafepos.catalogWatch=false; returns null if disabled or the directory cannot be watched.
+    public static synchronized CatalogWatcher start() {
+        if (shared == null && Boolean.parseBoolean(System.getProperty("cafepos.catalogWatch", "true"))) {
+            try {
+                shared = new CatalogWatcher(CatalogLoader.catalogFile());
+            } catch (IOException e) {
+                System.err.println("Catalog reload is unavailable: " + e.getMessage());
+            }
+        }
+        return shared;
+    }
+
+    public static synchronized void stop() {
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close the catalog watcher: " + e.getMessage());
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                WatchKey key = watchService.take();
+                boolean changed = drain(key);
+                // Keep collecting events until the file has been quiet for the settle time.
+                while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(key);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closed by stop().
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Returns whether any of the key's events are for the catalog file, and re-arms the key.
+    private boolean drain(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path name && name.equals(file.getFileName())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+        FileTime modified = modified();
+        if (modified == null || modified.equals(lastLoaded)) {
+            return;
+        }
+        try {
+            Catalog catalog = CatalogLoader.parseFile(file);
+            // Built now so the first search or cart change after the swap does not pay for them.
+            catalog.getSearchIndex();
+            catalog.getPricingRules();
+            lastLoaded = modified;
+            Catalog.publish(catalog);
+            Metrics.increment(Metrics.Counter.CATALOG_RELOADS);
+            System.err.println("Catalog reloaded from " + file + ": version " + catalog.getVersion()
+                    + ", " + catalog.size() + " products");
+        } catch (IOException | RuntimeException e) {
+            Metrics.increment(Metrics.Counter.CATALOG_RELOAD_FAILURES);
+            System.err.println("Catalog reload failed, keeping the current catalog: " + e.getMessage());
+        }
+    }
+
+    private FileTime modified() {
+        try {
+            return Files.isRegularFile(file) ? Files.getLastModifiedTime(file) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Locates the directory where the POS keeps its local files (journal, caches, settings).
+// Defaults to ~/.cafe-pos and can be moved with -Dcafepos.data.dir=<path>.
+public final class DataDirectory {
+    private DataDirectory() {
+    }
+
+    public static Path root() {
+        String configured = System.getProperty("cafepos.data.dir");
+        return configured != null
+                ? Path.of(configured)
+                : Path.of(System.getProperty("user.home"), ".cafe-pos");
+    }
+
+    // Returns the named subdirectory of the data directory, creating it if needed.
+    public static Path resolve(String child) {
+        Path directory = root().resolve(child);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create data directory: " + directory, e);
+        }
+        return directory;
+    }
+}
@@ -0,0 +1,100 @@
+package storage;
+
+import models.Money;
+import models.Order;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Binary encoding of an Order, used for journal records.
+// Strings are written as a length-prefixed UTF-8 byte run, with a length of -1 for null.
+// Promotions come last, so records written before they existed still decode (with none).
+final class OrderCodec {
+    private OrderCodec() {
+    }
+
+    // Encodes the order into the buffer, starting at its position.
+    // Throws BufferOverflowException if the buffer is too small.
+    static void encode(Order order, ByteBuffer out) throws BufferOverflowException {
+        out.putLong(order.orderNumber());
+        out.putLong(order.timestamp());
+        putString(out, order.cashier());
+        out.putInt(order.lines().size());
+        for (Order.Line line : order.lines()) {
+            putString(out, line.name());
+            putString(out, line.category());
+            out.putInt(line.quantity());
+            out.putLong(line.unitPrice().cents());
+        }
+        out.putLong(order.subtotal().cents());
+        out.putLong(order.discountBasisPoints());
+        out.putLong(order.discount().cents());
+        out.putLong(order.total().cents());
+        out.putLong(order.payment().cents());
+        out.putLong(order.change().cents());
+        out.putInt(order.promotions().size());
+        for (Order.Promotion promotion : order.promotions()) {
+            putString(out, promotion.name());
+            out.putLong(promotion.discount().cents());
+        }
+    }
+
+    // Decodes an order from the buffer, starting at its position; the buffer must end where the record does.
+    static Order decode(ByteBuffer in) {
+        long orderNumber = in.getLong();
+        long timestamp = in.getLong();
+        String cashier = getString(in);
+        int lineCount = in.getInt();
+        if (lineCount < 0) {
+            throw new IllegalArgumentException("Invalid line count: " + lineCount);
+        }
+        List<Order.Line> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            String name = getString(in);
+            String category = getString(in);
+            int quantity = in.getInt();
+            lines.add(new Order.Line(name, category, quantity, Money.ofCents(in.getLong())));
+        }
+        Money subtotal = Money.ofCents(in.getLong());
+        long discountBasisPoints = in.getLong();
+        Money discount = Money.ofCents(in.getLong());
+        Money total = Money.ofCents(in.getLong());
+        Money payment = Money.ofCents(in.getLong());
+        Money change = Money.ofCents(in.getLong());
+        List<Order.Promotion> promotions = new ArrayList<>();
+        if (in.hasRemaining()) {
+            int promotionCount = in.getInt();
+            if (promotionCount < 0) {
+                throw new IllegalArgumentException("Invalid promotion count: " + promotionCount);
+            }
+            for (int i = 0; i < promotionCount; i++) {
+                promotions.add(new Order.Promotion(getString(in), Money.ofCents(in.getLong())));
+            }
+        }
+        return new Order(orderNumber, timestamp, cashier, lines, subtotal, discountBasisPoints,
+                discount, total, payment, change, promotions);
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * OrderHistory keeps completed orders in arrival order with indexes by timestamp, order number, cashier and product.
+ * Queries return a Selection, a lazy view over the matching orders, so the cost of opening the history
+ * depends on the page being shown rather than on how many orders the shift has taken.
+ */
+
+package storage;
+
+import models.Order;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OrderHistory {
+    // A read-only, indexable view of matching orders, oldest first.
+    public interface Selection {
+        int size();
+
+        Order get(int index);
+    }
+
+    // Search criteria. Null fields are not filtered on; the time range is [from, to) in epoch milliseconds.
+    public record Query(Long orderNumber, String cashier, ProductKey product, Long from, Long to) {
+        public static final Query ALL = new Query(null, null, null, null, null);
+    }
+
+    // Growable list of ascending order positions, used as a posting list.
+    private static final class Positions {
+        private int[] values = new int[8];
+        private int size;
+
+        void add(int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+    }
+
+    private final List<Order> orders = new ArrayList<>();
+    // Index timestamps, clamped to be non-decreasing so a clock step backwards cannot break the binary search.
+    private long[] timestamps = new long[1024];
+    private final Map<Long, Integer> byOrderNumber = new HashMap<>();
+    private final Map<String, Positions> byCashier = new HashMap<>();
+    private final Map<ProductKey, Positions> byProduct = new HashMap<>();
+
+    // Adds a completed order to the history and its indexes.
+    public synchronized void add(Order order) {
+        int position = orders.size();
+        orders.add(order);
+        if (position == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, position * 2);
+        }
+        timestamps[position] = position > 0 ? Math.max(timestamps[position - 1], order.timestamp()) : order.timestamp();
+        byOrderNumber.put(order.orderNumber(), position);
+        if (order.cashier() != null) {
+            byCashier.computeIfAbsent(order.cashier(), key -> new Positions()).add(position);
+        }
+        for (Order.Line line : order.lines()) {
+            Positions positions = byProduct.computeIfAbsent(ProductKey.of(line), key -> new Positions());
+            // An order is listed once per product, even if the product appears on more than one line.
+            if (positions.size == 0 || positions.values[positions.size - 1] != position) {
+                positions.add(position);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return orders.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return orders.isEmpty();
+    }
+
+    // Returns the names of every cashier with at least one order, sorted.
+    public synchronized List<String> cashiers() {
+        return byCashier.keySet().stream().sorted().toList();
+    }
+
+    // Returns every product sold at least once, sorted by name and then category.
+    public synchronized List<ProductKey> products() {
+        return byProduct.keySet().stream().sorted().toList();
+    }
+
+    // Returns the order with the given number, or null if there is none.
+    public synchronized Order findByNumber(long orderNumber) {
+        Integer position = byOrderNumber.get(orderNumber);
+        return position != null ? orders.get(position) : null;
+    }
+
+    // Returns the orders matching the query.
+    // Single-index queries are views over the index with no copying; combined filters intersect the indexes.
+    public synchronized Selection select(Query query) {
+        int start = query.from() != null ? lowerBound(query.from()) : 0;
+        int end = query.to() != null ? lowerBound(query.to()) : orders.size();
+        if (query.orderNumber() != null) {
+            Integer position = byOrderNumber.get(query.orderNumber());
+            boolean matches = position != null && position >= start && position < end
+                    && matchesNames(orders.get(position), query);
+            return matches ? positions(new int[]{position}, 0, 1) : positions(new int[0], 0, 0);
+        }
+
+        Positions cashier = query.cashier() != null ? byCashier.getOrDefault(query.cashier(), new Positions()) : null;
+        Positions product = query.product() != null ? byProduct.getOrDefault(query.product(), new Positions()) : null;
+        if (cashier == null && product == null) {
+            return range(start, Math.max(start, end));
+        }
+        if (cashier == null || product == null) {
+            Positions positions = cashier != null ? cashier : product;
+            int from = lowerBound(positions, start);
+            int to = lowerBound(positions, end);
+            return positions(positions.values, from, Math.max(from, to));
+        }
+        return positions(intersect(cashier, product, start, end), 0, -1);
+    }
+
+    // Returns the index of the first order at or after the timestamp.
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = orders.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Returns the index of the first entry in the posting list at or after the position.
+    private static int lowerBound(Positions positions, int position) {
+        int index = Arrays.binarySearch(positions.values, 0, positions.size, position);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static int[] intersect(Positions first, Positions second, int start, int end) {
+        int[] result = new int[Math.min(first.size, second.size)];
+        int count = 0;
+        int i = lowerBound(first, start);
+        int j = lowerBound(second, start);
+        while (i < first.size && j < second.size) {
+            int a = first.values[i];
+            int b = second.values[j];
+            if (a >= end || b >= end) {
+                break;
+            }
+            if (a == b) {
+                result[count++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static boolean matchesNames(Order order, Query query) {
+        if (query.cashier() != null && !query.cashier().equals(order.cashier())) {
+            return false;
+        }
+        if (query.product() != null) {
+            return order.lines().stream().anyMatch(line -> ProductKey.of(line).equals(query.product()));
+        }
+        return true;
+    }
+
+    // A contiguous range of orders.
+    private Selection range(int from, int to) {
+        return new Selection() {
+            @Override
+            public int size() {
+                return to - from;
+            }
+
+            @Override
+            public Order get(int index) {
+                synchronized (OrderHistory.this) {
+                    return orders.get(from + index);
+                }
+            }
+        };
+    }
+
+    // A slice of a posting list; to of -1 means the whole array.
+    // Posting lists only ever grow at the end, so the slice stays valid while new orders are added.
+    private Selection positions(int[] values, int from, int to) {
+        int end = to < 0 ? values.length : to;
+        return new Selection() {
+            @Override
+            public int size() {
+                return end - from;
+            }
+
+            @Override
+            public Order get(int index) {
+                synchronized (OrderHistory.this) {
+                    return orders.get(values[from + index]);
+                }
+            }
+        };
+    }
+}
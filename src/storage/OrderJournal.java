@@ -0,0 +1,340 @@
+/**
+ * OrderJournal is the durable, append-only record of completed orders.
+ *
+ * Orders are written to fixed-size, memory-mapped segment files. Each record is framed as
+ * [payload length][CRC32C of payload][payload], and a zero length marks the end of the written data.
+ * A background flusher forces everything written since the previous flush in one go (group commit),
+ * so a burst of bills costs one fsync rather than one per bill. That includes the tail of a segment
+ * that filled up: appends only switch to the next segment, and the flusher forces the full one.
+ * On startup every segment is scanned and checksummed; a torn record at the tail of the last segment,
+ * left by a crash mid-write, is discarded and zeroed so appending can resume after the last good order.
+ */
+
+package storage;
+
+import models.Order;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+public class OrderJournal implements AutoCloseable {
+    public static final int DEFAULT_SEGMENT_BYTES = 16 * 1024 * 1024;
+
+    private static final int MAGIC = 0x43504A31; // "CPJ1"
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private static OrderJournal shared;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final AtomicLong lastOrderNumber = new AtomicLong();
+    private final Thread flusher;
+
+    private final OrderHistory history = new OrderHistory();
+    private final SalesLedger sales = new SalesLedger();
+
+    // A written but not yet forced byte range of a segment.
+    private record Unflushed(MappedByteBuffer buffer, int from, int to) {
+    }
+
+    // Guarded by this.
+    private final List<CompletableFuture<Void>> pendingCommits = new ArrayList<>();
+    // Full segments whose tails the flusher still has to force, oldest first.
+    private final List<Unflushed> sealedSegments = new ArrayList<>();
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+    private MappedByteBuffer segment;
+    private int segmentNumber;
+    private int flushedPosition;
+    private boolean closed;
+
+    private OrderJournal(Path directory, int segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        recover();
+        flusher = new Thread(this::runFlusher, "order-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Opens the journal in the given directory, recovering any orders already on disk.
+    public static OrderJournal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public static OrderJournal open(Path directory, int segmentBytes) throws IOException {
+        if (segmentBytes <= SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentBytes);
+        }
+        Files.createDirectories(directory);
+        return new OrderJournal(directory, segmentBytes);
+    }
+
+    // Returns the process-wide journal in the data directory, opening it on first use.
+    public static synchronized OrderJournal shared() {
+        if (shared == null) {
+            try {
+                shared = open(DataDirectory.resolve("journal"));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open order journal: " + e.getMessage(), e);
+            }
+            OrderJournal journal = shared;
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "order-journal-shutdown"));
+        }
+        return shared;
+    }
+
+    // Returns the next order number, continuing after the highest number found on disk.
+    public long nextOrderNumber() {
+        return lastOrderNumber.incrementAndGet();
+    }
+
+    // Returns the highest order number taken so far, whether or not its order has been appended yet.
+    public long lastOrderNumber() {
+        return lastOrderNumber.get();
+    }
+
+    // Appends the order to the journal. The returned future completes once the record has been forced to disk.
+    public synchronized CompletableFuture<Void> append(Order order) {
+        if (closed) {
+            throw new IllegalStateException("Order journal is closed");
+        }
+        ByteBuffer payload = encode(order);
+        int recordBytes = RECORD_HEADER_BYTES + payload.remaining();
+        if (SEGMENT_HEADER_BYTES + recordBytes + Integer.BYTES > segmentBytes) {
+            throw new IllegalArgumentException("Order too large for a journal segment: " + recordBytes + " bytes");
+        }
+        // Keeps room for the zero length that terminates the segment.
+        if (segment.remaining() < recordBytes + Integer.BYTES) {
+            rollover();
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        int position = segment.position();
+        segment.position(position + RECORD_HEADER_BYTES);
+        segment.put(payload);
+        segment.putInt(position + Integer.BYTES, (int) crc.getValue());
+        segment.putInt(position, recordBytes - RECORD_HEADER_BYTES);
+
+        history.add(order);
+        sales.add(order);
+        lastOrderNumber.accumulateAndGet(order.orderNumber(), Math::max);
+        CompletableFuture<Void> commit = new CompletableFuture<>();
+        pendingCommits.add(commit);
+        notifyAll();
+        return commit;
+    }
+
+    // Returns the indexed history of every journaled order.
+    public OrderHistory history() {
+        return history;
+    }
+
+    // Returns the columnar ledger of every journaled sale, for reports.
+    public SalesLedger sales() {
+        return sales;
+    }
+
+    // Flushes outstanding records and stops the background flusher.
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Waits for appended records and forces them to disk in batches, completing their commit futures.
+    private void runFlusher() {
+        while (true) {
+            List<CompletableFuture<Void>> batch;
+            List<Unflushed> ranges;
+            synchronized (this) {
+                while (pendingCommits.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pendingCommits.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(pendingCommits);
+                pendingCommits.clear();
+                ranges = new ArrayList<>(sealedSegments);
+                sealedSegments.clear();
+                ranges.add(new Unflushed(segment, flushedPosition, segment.position()));
+                flushedPosition = segment.position();
+            }
+            try {
+                for (Unflushed range : ranges) {
+                    if (range.to() > range.from()) {
+                        range.buffer().force(range.from(), range.to() - range.from());
+                    }
+                }
+                batch.forEach(commit -> commit.complete(null));
+            } catch (RuntimeException e) {
+                System.err.println("Failed to flush order journal: " + e.getMessage());
+                batch.forEach(commit -> commit.completeExceptionally(e));
+            }
+        }
+    }
+
+    // Encodes the order into the scratch buffer, growing it for unusually large orders.
+    private ByteBuffer encode(Order order) {
+        while (true) {
+            scratch.clear();
+            try {
+                OrderCodec.encode(order, scratch);
+                return scratch.flip();
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    // Continues in a new segment, leaving the full one's unforced tail to the flusher
+    // so appends never wait behind a whole segment's fsync.
+    private void rollover() {
+        // Queued first, so the tail is forced even if opening the next segment fails halfway.
+        sealedSegments.add(new Unflushed(segment, flushedPosition, segment.position()));
+        try {
+            openSegment(segmentNumber + 1, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start journal segment: " + e.getMessage(), e);
+        }
+    }
+
+    // Scans every segment, loading intact orders, and leaves the last segment open for appending.
+    private void recover() throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(OrderJournal::isSegment).sorted().toList();
+        }
+        if (segments.isEmpty()) {
+            openSegment(1, true);
+            return;
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            int number = segmentNumber(path);
+            if (last) {
+                openSegment(number, false);
+                int end = scan(segment, path);
+                segment.position(end);
+                flushedPosition = end;
+            } else {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    scan(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path);
+                }
+            }
+        }
+    }
+
+    // Reads intact records from the segment into orders and returns the position after the last one.
+    // Anything after that position in a writable segment is a torn write and is zeroed.
+    private int scan(MappedByteBuffer buffer, Path path) {
+        if (buffer.limit() < SEGMENT_HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            System.err.println("Skipping journal segment with a bad header: " + path);
+            if (!buffer.isReadOnly()) {
+                initializeSegment(buffer);
+            }
+            return SEGMENT_HEADER_BYTES;
+        }
+        CRC32C crc = new CRC32C();
+        int position = SEGMENT_HEADER_BYTES;
+        while (position + RECORD_HEADER_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            int payloadStart = position + RECORD_HEADER_BYTES;
+            if (length < 0 || length > buffer.limit() - payloadStart) {
+                return discardTail(buffer, position, path);
+            }
+            ByteBuffer payload = buffer.slice(payloadStart, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                return discardTail(buffer, position, path);
+            }
+            try {
+                Order order = OrderCodec.decode(payload);
+                history.add(order);
+                sales.add(order);
+                lastOrderNumber.accumulateAndGet(order.orderNumber(), Math::max);
+            } catch (RuntimeException e) {
+                return discardTail(buffer, position, path);
+            }
+            position = payloadStart + length;
+        }
+        return position;
+    }
+
+    private int discardTail(MappedByteBuffer buffer, int position, Path path) {
+        System.err.println("Discarding torn journal record at offset " + position + " in " + path);
+        if (!buffer.isReadOnly()) {
+            for (int i = position; i < buffer.limit(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+        return position;
+    }
+
+    // Maps the numbered segment for appending, creating and initializing it if requested.
+    private void openSegment(int number, boolean create) throws IOException {
+        Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = create ? segmentBytes : Math.max(channel.size(), SEGMENT_HEADER_BYTES);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        segmentNumber = number;
+        if (create) {
+            initializeSegment(segment);
+        }
+        segment.position(SEGMENT_HEADER_BYTES);
+        flushedPosition = SEGMENT_HEADER_BYTES;
+    }
+
+    private static void initializeSegment(MappedByteBuffer buffer) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(Integer.BYTES, 1);
+        buffer.force(0, SEGMENT_HEADER_BYTES);
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static int segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
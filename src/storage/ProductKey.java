@@ -0,0 +1,32 @@
+/**
+ * ProductKey identifies the product sold on an order line by category and name. The catalog allows
+ * the same name in more than one category, so reports and history filters must not key on the name alone.
+ */
+
+package storage;
+
+import models.Order;
+
+import java.util.Comparator;
+
+public record ProductKey(String category, String name) implements Comparable<ProductKey> {
+    // Category recorded for lines whose product had no category.
+    public static final String NO_CATEGORY = "-";
+
+    private static final Comparator<ProductKey> ORDER =
+            Comparator.comparing(ProductKey::name).thenComparing(ProductKey::category);
+
+    public static ProductKey of(Order.Line line) {
+        return new ProductKey(line.category() != null ? line.category() : NO_CATEGORY, line.name());
+    }
+
+    // The name with its category, e.g. "Latte (Hot Drinks)", for reports and filters.
+    public String label() {
+        return NO_CATEGORY.equals(category) ? name : name + " (" + category + ")";
+    }
+
+    @Override
+    public int compareTo(ProductKey other) {
+        return ORDER.compare(this, other);
+    }
+}
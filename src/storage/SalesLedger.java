@@ -0,0 +1,176 @@
+/**
+ * SalesLedger is a columnar, append-only store of every sale, built for end-of-day reporting.
+ * Orders and their lines are kept in parallel primitive arrays, with products, categories and
+ * cashiers dictionary-encoded as ints, so a report scans flat arrays instead of walking order objects.
+ *
+ * Appends happen under a lock. Readers take a Snapshot, which shares the arrays without copying:
+ * rows below the snapshot's size are never written again, so a snapshot stays valid while sales continue.
+ */
+
+package storage;
+
+import models.Order;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SalesLedger {
+    // Assigns dense ids to values, in order of first appearance.
+    private static final class Dictionary<T> {
+        private final Map<T, Integer> ids = new HashMap<>();
+        private final List<T> values = new ArrayList<>();
+
+        int id(T value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        List<T> values() {
+            return List.copyOf(values);
+        }
+    }
+
+    // A consistent, read-only view of the ledger. Arrays may be longer than the row counts; only the
+    // first orderCount order rows and lineCount line rows are valid.
+    public record Snapshot(int orderCount, int lineCount,
+                           long[] orderTimestamps, int[] orderCashiers, int[] orderFirstLines,
+                           long[] orderSubtotals, long[] orderDiscounts, long[] orderTotals,
+                           long[] orderPayments, long[] orderChanges,
+                           int[] lineOrders, int[] lineProducts, int[] lineCategories, int[] lineQuantities,
+                           long[] lineUnitPrices, long[] lineDiscounts,
+                           List<ProductKey> products, List<String> categories, List<String> cashiers) {
+        // Returns the first order row at or after the timestamp; order timestamps are non-decreasing.
+        public int firstOrderAtOrAfter(long timestamp) {
+            int low = 0;
+            int high = orderCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (orderTimestamps[middle] < timestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // Returns the first line row of the order row, or lineCount for orderCount.
+        public int firstLine(int orderRow) {
+            return orderRow < orderCount ? orderFirstLines[orderRow] : lineCount;
+        }
+    }
+
+    // Cashier id recorded for orders without a cashier.
+    public static final String NO_CASHIER = "-";
+    // Category recorded for lines whose product had no category.
+    public static final String NO_CATEGORY = ProductKey.NO_CATEGORY;
+
+    private int orderCount;
+    private int lineCount;
+    // Clamped to be non-decreasing, like the history index, so time ranges can be found by binary search.
+    private long[] orderTimestamps = new long[1024];
+    private int[] orderCashiers = new int[1024];
+    private int[] orderFirstLines = new int[1024];
+    private long[] orderSubtotals = new long[1024];
+    private long[] orderDiscounts = new long[1024];
+    private long[] orderTotals = new long[1024];
+    private long[] orderPayments = new long[1024];
+    private long[] orderChanges = new long[1024];
+
+    private int[] lineOrders = new int[4096];
+    private int[] lineProducts = new int[4096];
+    private int[] lineCategories = new int[4096];
+    private int[] lineQuantities = new int[4096];
+    private long[] lineUnitPrices = new long[4096];
+    // Each line's share of the order discount, so line discounts add up to the order's exactly.
+    private long[] lineDiscounts = new long[4096];
+
+    // Keyed by category and name, so same-name products in different categories are reported apart.
+    private final Dictionary<ProductKey> products = new Dictionary<>();
+    private final Dictionary<String> categories = new Dictionary<>();
+    private final Dictionary<String> cashiers = new Dictionary<>();
+
+    // Records the order and its lines.
+    public synchronized void add(Order order) {
+        if (orderCount == orderTimestamps.length) {
+            growOrders(orderCount * 2);
+        }
+        if (lineCount + order.lines().size() > lineOrders.length) {
+            growLines(Math.max(lineCount * 2, lineCount + order.lines().size()));
+        }
+
+        int row = orderCount;
+        orderTimestamps[row] = row > 0 ? Math.max(orderTimestamps[row - 1], order.timestamp()) : order.timestamp();
+        orderCashiers[row] = cashiers.id(order.cashier() != null ? order.cashier() : NO_CASHIER);
+        orderFirstLines[row] = lineCount;
+        orderSubtotals[row] = order.subtotal().cents();
+        // Promotions and the percentage discount together: everything taken off the subtotal.
+        long discount = order.subtotal().cents() - order.total().cents();
+        orderDiscounts[row] = discount;
+        orderTotals[row] = order.total().cents();
+        orderPayments[row] = order.payment().cents();
+        orderChanges[row] = order.change().cents();
+
+        // Splits the discount in proportion to line totals; the last line takes the rounding remainder.
+        long subtotal = order.subtotal().cents();
+        long discountLeft = discount;
+        List<Order.Line> lines = order.lines();
+        for (int i = 0; i < lines.size(); i++) {
+            Order.Line line = lines.get(i);
+            int lineRow = lineCount + i;
+            lineOrders[lineRow] = row;
+            ProductKey product = ProductKey.of(line);
+            lineProducts[lineRow] = products.id(product);
+            lineCategories[lineRow] = categories.id(product.category());
+            lineQuantities[lineRow] = line.quantity();
+            lineUnitPrices[lineRow] = line.unitPrice().cents();
+            long share = i == lines.size() - 1 || subtotal == 0
+                    ? discountLeft
+                    : Math.multiplyExact(discount, line.total().cents()) / subtotal;
+            share = Math.min(share, discountLeft);
+            lineDiscounts[lineRow] = share;
+            discountLeft -= share;
+        }
+        lineCount += lines.size();
+        orderCount = row + 1;
+    }
+
+    public synchronized int size() {
+        return orderCount;
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(orderCount, lineCount, orderTimestamps, orderCashiers, orderFirstLines,
+                orderSubtotals, orderDiscounts, orderTotals, orderPayments, orderChanges,
+                lineOrders, lineProducts, lineCategories, lineQuantities, lineUnitPrices, lineDiscounts,
+                products.values(), categories.values(), cashiers.values());
+    }
+
+    private void growOrders(int capacity) {
+        orderTimestamps = Arrays.copyOf(orderTimestamps, capacity);
+        orderCashiers = Arrays.copyOf(orderCashiers, capacity);
+        orderFirstLines = Arrays.copyOf(orderFirstLines, capacity);
+        orderSubtotals = Arrays.copyOf(orderSubtotals, capacity);
+        orderDiscounts = Arrays.copyOf(orderDiscounts, capacity);
+        orderTotals = Arrays.copyOf(orderTotals, capacity);
+        orderPayments = Arrays.copyOf(orderPayments, capacity);
+        orderChanges = Arrays.copyOf(orderChanges, capacity);
+    }
+
+    private void growLines(int capacity) {
+        lineOrders = Arrays.copyOf(lineOrders, capacity);
+        lineProducts = Arrays.copyOf(lineProducts, capacity);
+        lineCategories = Arrays.copyOf(lineCategories, capacity);
+        lineQuantities = Arrays.copyOf(lineQuantities, capacity);
+        lineUnitPrices = Arrays.copyOf(lineUnitPrices, capacity);
+        lineDiscounts = Arrays.copyOf(lineDiscounts, capacity);
+    }
+}
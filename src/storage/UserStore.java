@@ -0,0 +1,201 @@
+/**
+ * UserStore keeps the till's cashiers in users.json in the data directory, as salted PBKDF2 hashes.
+ *
+ * The iteration count is calibrated when the store is created so that one check takes about
+ * TARGET_VERIFY_MILLIS on this machine: slow enough that each guess is expensive, fast enough that
+ * switching cashier stays well under 100 ms. Hashes made with fewer iterations (an older or slower
+ * till) are re-hashed at the next successful login. Repeated failures lock the name out for a while,
+ * since a PIN has too few combinations to rely on hashing alone.
+ *
+ * A new store has no accounts and none is built in: the login screen asks for the first cashier's
+ * name and PIN, or set a cashier's PIN from the command line with: storage.UserStore <username> <pin>
+ */
+
+package storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import diagnostics.Metrics;
+import models.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public final class UserStore {
+    public static final long TARGET_VERIFY_MILLIS = 50;
+    // Never fewer iterations than this, however slow the machine.
+    public static final int MIN_ITERATIONS = 50_000;
+    public static final int MAX_FAILED_ATTEMPTS = 5;
+    public static final long LOCKOUT_MILLIS = 30_000;
+    public static final int MIN_PIN_LENGTH = 4;
+
+    private static final int CALIBRATION_ITERATIONS = 10_000;
+    private static final int CALIBRATION_ROUNDS = 8;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static UserStore shared;
+
+    // The file format: the iteration count for new hashes, and every user.
+    private record Contents(int iterations, List<User> users) {
+    }
+
+    private static final class Failures {
+        int count;
+        long lockedUntil;
+    }
+
+    private final Path file;
+    private final int iterations;
+    private final Map<String, User> users = new TreeMap<>();
+    private final Map<String, Failures> failures = new HashMap<>();
+    // Checked against unknown names, so they take as long to reject as a wrong PIN.
+    private final User decoy;
+
+    private UserStore(Path file, int iterations, List<User> users) {
+        this.file = file;
+        this.iterations = iterations;
+        for (User user : users) {
+            this.users.put(user.username(), user);
+        }
+        this.decoy = User.create("-", "-", iterations);
+    }
+
+    // Opens the store in the file, or an empty one with a calibrated iteration count if it is missing.
+    // The file is written when the first account is added.
+    public static UserStore open(Path file) throws IOException {
+        if (Files.exists(file)) {
+            Contents contents = mapper.readValue(file.toFile(), Contents.class);
+            return new UserStore(file, Math.max(MIN_ITERATIONS, contents.iterations()), contents.users());
+        }
+        return new UserStore(file, calibrateIterations(TARGET_VERIFY_MILLIS), List.of());
+    }
+
+    // Returns the process-wide store in the data directory.
+    public static synchronized UserStore shared() {
+        if (shared == null) {
+            try {
+                shared = open(DataDirectory.resolve("settings").resolve("users.json"));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open user store: " + e.getMessage(), e);
+            }
+        }
+        return shared;
+    }
+
+    // Returns the iteration count that makes one hash take about the target time here.
+    public static int calibrateIterations(long targetMillis) {
+        byte[] salt = new byte[16];
+        // The best of several rounds, since the first ones run before the JIT has compiled the hash.
+        long nanos = Long.MAX_VALUE;
+        for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+            long start = System.nanoTime();
+            User.derive("calibration", salt, CALIBRATION_ITERATIONS);
+            nanos = Math.max(1, Math.min(nanos, System.nanoTime() - start));
+        }
+        long iterations = CALIBRATION_ITERATIONS * targetMillis * 1_000_000 / nanos;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_ITERATIONS, iterations));
+    }
+
+    // Runs one hash so the first login after startup does not pay for loading the provider and compiling it.
+    public void warmUp() {
+        decoy.authenticate("-");
+    }
+
+    // Returns true if the password is right for the user.
+    // Throws IllegalStateException while the user is locked out after too many failures.
+    public synchronized boolean authenticate(String username, String password) {
+        long now = System.currentTimeMillis();
+        Failures failed = failures.get(username);
+        if (failed != null && failed.lockedUntil > now) {
+            throw new IllegalStateException("Too many failed attempts. Try again in "
+                    + ((failed.lockedUntil - now + 999) / 1000) + " seconds.");
+        }
+        User user = users.get(username);
+        boolean valid = false;
+        try (Metrics.Timing timing = Metrics.start(Metrics.Timer.LOGIN_VERIFY)) {
+            if (user != null) {
+                valid = user.authenticate(password);
+            } else {
+                decoy.authenticate(password);
+            }
+        }
+        if (!valid) {
+            Failures entry = failures.computeIfAbsent(username, key -> new Failures());
+            if (++entry.count >= MAX_FAILED_ATTEMPTS) {
+                entry.count = 0;
+                entry.lockedUntil = now + LOCKOUT_MILLIS;
+            }
+            return false;
+        }
+        failures.remove(username);
+        if (user.iterations() < iterations) {
+            setPassword(username, password);
+        }
+        return true;
+    }
+
+    // Adds the user, or replaces their password, and saves the store.
+    public synchronized void setPassword(String username, String password) {
+        users.put(username, User.create(username, password, iterations));
+        save();
+    }
+
+    // Adds the first account of a new store, for the login screen's first run.
+    // Throws IllegalStateException if an account exists already, so it cannot be used to add more.
+    public synchronized void createFirstUser(String username, String password) {
+        if (!users.isEmpty()) {
+            throw new IllegalStateException("An account already exists");
+        }
+        if (username == null || username.isBlank() || password == null || password.length() < MIN_PIN_LENGTH) {
+            throw new IllegalArgumentException("Choose a username and a PIN of at least " + MIN_PIN_LENGTH + " digits");
+        }
+        setPassword(username, password);
+    }
+
+    public synchronized boolean isEmpty() {
+        return users.isEmpty();
+    }
+
+    public synchronized void removeUser(String username) {
+        if (users.remove(username) != null) {
+            save();
+        }
+    }
+
+    public synchronized List<String> usernames() {
+        return List.copyOf(users.keySet());
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    // Writes the store to a temporary file and moves it into place, so a crash never leaves a partial file.
+    private void save() {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(temporary.toFile(),
+                    new Contents(iterations, new ArrayList<>(users.values())));
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save users: " + e.getMessage(), e);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: storage.UserStore <username> <pin>");
+            System.exit(1);
+        }
+        UserStore store = shared();
+        store.setPassword(args[0], args[1]);
+        System.out.println("Saved " + args[0] + " (" + store.getIterations() + " iterations)");
+    }
+}
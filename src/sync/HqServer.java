@@ -0,0 +1,153 @@
+/**
+ * HqServer is a local stand-in for the head office endpoint that OrderOutbox posts to, for testing sync
+ * without a real HQ. It keeps the orders it receives in memory.
+ *
+ *   POST /orders    a batch, {"store": ID, "orders": [{"id": ..., ...}]}, optionally gzip-compressed
+ *                   -> {"accepted": N, "duplicates": N}
+ *   GET  /orders    -> {"orders": N, "batches": N, "duplicates": N}
+ *
+ * Orders are deduplicated by ID, so a resent batch is acknowledged again without being counted twice.
+ * A malformed batch gets a 400 with {"error": message}. setAvailable(false) answers every request with
+ * a 503, to simulate an outage.
+ *
+ * Run with: sync.HqServer [port]
+ */
+
+package sync;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+public class HqServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8090;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // Every order received, by ID.
+    private final Map<String, JsonNode> orders = new ConcurrentHashMap<>();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private volatile boolean available = true;
+
+    // Starts serving on the given local port; port 0 picks a free one.
+    public HqServer(int port) throws IOException {
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/orders", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        HqServer server = new HqServer(port);
+        System.out.println("HQ stand-in listening on http://localhost:" + server.getPort() + "/orders");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Switches the simulated outage off (true) or on (false).
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    // Returns the order received with the given ID, or null.
+    public JsonNode getOrder(String id) {
+        return orders.get(id);
+    }
+
+    public int getOrderCount() {
+        return orders.size();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!available) {
+                send(exchange, 503, "{\"error\":\"HQ is unavailable\"}");
+                return;
+            }
+            switch (exchange.getRequestMethod()) {
+                case "POST" -> receive(exchange);
+                case "GET" -> send(exchange, 200, "{\"orders\":" + orders.size() + ",\"batches\":" + batches.get()
+                        + ",\"duplicates\":" + duplicates.get() + "}");
+                default -> send(exchange, 405, "{\"error\":\"Method not allowed\"}");
+            }
+        }
+    }
+
+    private void receive(HttpExchange exchange) throws IOException {
+        JsonNode batch;
+        try (InputStream body = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))
+                ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+            batch = mapper.readTree(body);
+        } catch (IOException e) {
+            send(exchange, 400, mapper.createObjectNode().put("error", "Malformed batch: " + e.getMessage()).toString());
+            return;
+        }
+        JsonNode received = batch == null ? null : batch.get("orders");
+        if (received == null || !received.isArray()) {
+            send(exchange, 400, "{\"error\":\"Expected {\\\"orders\\\": [...]}\"}");
+            return;
+        }
+        // A batch is taken whole or not at all.
+        for (JsonNode order : received) {
+            if (!order.path("id").isTextual()) {
+                send(exchange, 400, "{\"error\":\"Every order needs an id\"}");
+                return;
+            }
+        }
+        int accepted = 0;
+        int repeated = 0;
+        for (JsonNode order : received) {
+            if (orders.putIfAbsent(order.get("id").asText(), order) == null) {
+                accepted++;
+            } else {
+                repeated++;
+            }
+        }
+        batches.incrementAndGet();
+        duplicates.addAndGet(repeated);
+        send(exchange, 200, "{\"accepted\":" + accepted + ",\"duplicates\":" + repeated + "}");
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
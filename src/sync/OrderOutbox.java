@@ -0,0 +1,418 @@
+/**
+ * OrderOutbox ships completed orders to head office (HQ) in compressed batches, whether or not the
+ * store is online.
+ *
+ * Journaled orders are queued in a small bounded queue. A spooler thread groups them into batches,
+ * closing a batch when it holds batchOrders orders or its oldest order has waited flushMillis. Each
+ * batch is written to the outbox directory as a gzip-compressed JSON file, which is exactly the
+ * request body later sent to HQ. A sender thread posts the oldest file, deletes it once HQ accepts
+ * it, and retries failures with exponential backoff. While the store is offline the files pile up
+ * on disk, not in memory.
+ *
+ * Checkout never waits on sync. Queuing an order never blocks. If the queue is full, the order is
+ * not held anywhere; the spooler later reads it back from the journal. The same happens at startup
+ * for orders journaled after the last spooled batch. The threads run at low priority. After an
+ * outage the backlog is sent one batch at a time, with a short pause between batches, so a
+ * recovering link is not saturated.
+ *
+ * Every order carries an ID made of the store ID and its order number. HQ uses that ID to drop
+ * orders it has already seen, so a batch that is resent is harmless; for example, when its
+ * acknowledgement was lost or a catch-up overlaps the queue.
+ *
+ *   -Dcafepos.hq.url=<url>     the HQ endpoint that batches are posted to (sync is off if not set)
+ *   -Dcafepos.store.id=<id>    this store's ID (default: store-1)
+ */
+
+package sync;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import diagnostics.Metrics;
+import models.Order;
+import storage.DataDirectory;
+import storage.OrderJournal;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+public final class OrderOutbox implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_BATCH_ORDERS = 200;
+    public static final long DEFAULT_FLUSH_MILLIS = 5_000;
+    private static final long INITIAL_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 5 * 60_000;
+    // Pause between batches while catching up on a backlog.
+    private static final long DRAIN_PAUSE_MILLIS = 200;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(15);
+    // Orders numbered just before the last spooled one are spooled again at startup, in case they were
+    // journaled after it by a concurrent checkout. HQ drops the duplicates.
+    private static final int RESCAN_ORDERS = 32;
+    private static final String BATCH_PREFIX = "batch-";
+    private static final String BATCH_SUFFIX = ".json.gz";
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private static OrderOutbox shared;
+
+    private final OrderJournal journal;
+    private final Path directory;
+    private final URI endpoint;
+    private final String storeId;
+    private final int batchOrders;
+    private final long flushMillis;
+    private final BlockingQueue<Order> queue;
+    private final HttpClient http;
+    private final Thread spooler;
+    private final Thread sender;
+    // The lowest order number that has to be read back from the journal, or 0 if none.
+    private final AtomicLong catchUpFrom = new AtomicLong();
+    // Counts spooled batches, so the sender can wait for a new one without missing it.
+    private final Object batchSpooled = new Object();
+    private long spooledBatches;
+    private volatile boolean closed;
+
+    // Spooler state: the next batch file number, and the highest order number spooled so far.
+    private long nextBatch;
+    private long spooledThrough;
+
+    public OrderOutbox(OrderJournal journal, Path directory, URI endpoint, String storeId) throws IOException {
+        this(journal, directory, endpoint, storeId, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_ORDERS, DEFAULT_FLUSH_MILLIS);
+    }
+
+    public OrderOutbox(OrderJournal journal, Path directory, URI endpoint, String storeId,
+                       int queueCapacity, int batchOrders, long flushMillis) throws IOException {
+        if (queueCapacity <= 0 || batchOrders <= 0 || flushMillis <= 0) {
+            throw new IllegalArgumentException("Queue capacity, batch size and flush interval must be greater than 0");
+        }
+        if (storeId == null || storeId.isBlank()) {
+            throw new IllegalArgumentException("A store ID is required");
+        }
+        this.journal = journal;
+        this.directory = directory;
+        this.endpoint = endpoint;
+        this.storeId = storeId;
+        this.batchOrders = batchOrders;
+        this.flushMillis = flushMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        Files.createDirectories(directory);
+        readCursor();
+        // Picks up orders journaled after the last spooled batch, e.g. before a crash or while sync was off.
+        catchUpFrom.set(Math.max(1, spooledThrough - RESCAN_ORDERS + 1));
+
+        spooler = new Thread(this::runSpooler, "order-outbox-spooler");
+        sender = new Thread(this::runSender, "order-outbox-sender");
+        for (Thread thread : List.of(spooler, sender)) {
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    }
+
+    // Returns the process-wide outbox for the HQ endpoint in -Dcafepos.hq.url, or null if none is set.
+    public static synchronized OrderOutbox shared() {
+        String url = System.getProperty("cafepos.hq.url");
+        if (shared == null && url != null && !url.isBlank()) {
+            try {
+                shared = new OrderOutbox(OrderJournal.shared(), DataDirectory.resolve("outbox"), URI.create(url),
+                        System.getProperty("cafepos.store.id", "store-1"));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open the order outbox: " + e.getMessage(), e);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::close, "order-outbox-shutdown"));
+        }
+        return shared;
+    }
+
+    // Queues a journaled order for HQ without waiting. If the queue is full, the order is read back
+    // from the journal once the spooler catches up.
+    public void submit(Order order) {
+        if (closed) {
+            return;
+        }
+        if (!queue.offer(order)) {
+            Metrics.increment(Metrics.Counter.SYNC_ORDERS_DEFERRED);
+            catchUpFrom.accumulateAndGet(order.orderNumber(), (current, number) -> current == 0 ? number : Math.min(current, number));
+        }
+    }
+
+    // Returns the ID HQ knows the order by: unique across stores, and the same every time it is sent.
+    public String orderId(Order order) {
+        return storeId + "-" + order.orderNumber();
+    }
+
+    // Returns the number of batches spooled on disk and not yet accepted by HQ.
+    public int getPendingBatches() {
+        return pendingBatches().size();
+    }
+
+    public URI getEndpoint() {
+        return endpoint;
+    }
+
+    // Spools what is queued, then stops. Batches not yet sent stay on disk for the next start.
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            spooler.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sender.interrupt();
+    }
+
+    // Collects orders into batches and writes each batch to disk once it is full or old enough.
+    private void runSpooler() {
+        List<Order> batch = new ArrayList<>(batchOrders);
+        long deadline = 0;
+        try {
+            while (!closed || !queue.isEmpty()) {
+                if (catchUpFrom.get() != 0) {
+                    spool(batch);
+                    catchUp();
+                }
+                long wait = batch.isEmpty() ? flushMillis : deadline - System.currentTimeMillis();
+                Order order = queue.poll(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+                if (order != null) {
+                    if (batch.isEmpty()) {
+                        deadline = System.currentTimeMillis() + flushMillis;
+                    }
+                    batch.add(order);
+                    queue.drainTo(batch, batchOrders - batch.size());
+                }
+                if (batch.size() >= batchOrders || !batch.isEmpty() && System.currentTimeMillis() >= deadline) {
+                    spool(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            spool(batch);
+        }
+    }
+
+    // Reads orders from the journal, from the lowest one that was not queued up to the latest, and spools them.
+    private void catchUp() {
+        long from = catchUpFrom.getAndSet(0);
+        long to = journal.lastOrderNumber();
+        List<Order> batch = new ArrayList<>(batchOrders);
+        for (long number = from; number <= to && !closed; number++) {
+            // Numbers taken by a checkout that then failed have no order.
+            Order order = journal.history().findByNumber(number);
+            if (order != null) {
+                batch.add(order);
+                if (batch.size() >= batchOrders) {
+                    spool(batch);
+                }
+            }
+        }
+        spool(batch);
+    }
+
+    // Writes the batch as the next outbox file and clears it. On failure the orders are read back from the journal later.
+    private void spool(List<Order> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long lowest = Long.MAX_VALUE;
+        long highest = 0;
+        for (Order order : batch) {
+            lowest = Math.min(lowest, order.orderNumber());
+            highest = Math.max(highest, order.orderNumber());
+        }
+        Path file = directory.resolve(String.format("%s%012d%s", BATCH_PREFIX, nextBatch, BATCH_SUFFIX));
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+                GZIPOutputStream gzip = new GZIPOutputStream(out);
+                writeBatch(gzip, batch);
+                gzip.finish();
+                out.getFD().sync();
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            nextBatch++;
+            spooledThrough = Math.max(spooledThrough, highest);
+            writeCursor();
+        } catch (IOException e) {
+            System.err.println("Failed to spool " + batch.size() + " orders for HQ: " + e.getMessage());
+            catchUpFrom.accumulateAndGet(lowest, (current, number) -> current == 0 ? number : Math.min(current, number));
+        }
+        batch.clear();
+        synchronized (batchSpooled) {
+            spooledBatches++;
+            batchSpooled.notifyAll();
+        }
+    }
+
+    // Writes {"store": ..., "orders": [...]} with every amount as a decimal string, as CheckoutServer does.
+    private void writeBatch(GZIPOutputStream out, List<Order> batch) throws IOException {
+        try (JsonGenerator json = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.writeStartObject();
+            json.writeStringField("store", storeId);
+            json.writeArrayFieldStart("orders");
+            for (Order order : batch) {
+                json.writeStartObject();
+                json.writeStringField("id", orderId(order));
+                json.writeNumberField("orderNumber", order.orderNumber());
+                json.writeNumberField("timestamp", order.timestamp());
+                json.writeStringField("cashier", order.cashier());
+                json.writeArrayFieldStart("lines");
+                for (Order.Line line : order.lines()) {
+                    json.writeStartObject();
+                    json.writeStringField("name", line.name());
+                    json.writeStringField("category", line.category());
+                    json.writeNumberField("quantity", line.quantity());
+                    json.writeStringField("unitPrice", line.unitPrice().toString());
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+                json.writeArrayFieldStart("promotions");
+                for (Order.Promotion promotion : order.promotions()) {
+                    json.writeStartObject();
+                    json.writeStringField("name", promotion.name());
+                    json.writeStringField("discount", promotion.discount().toString());
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+                json.writeStringField("subtotal", order.subtotal().toString());
+                json.writeStringField("discount", order.discount().toString());
+                json.writeStringField("total", order.total().toString());
+                json.writeStringField("payment", order.payment().toString());
+                json.writeStringField("change", order.change().toString());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    // Sends spooled batches oldest first, one at a time, backing off while HQ cannot be reached.
+    private void runSender() {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        try {
+            while (!closed) {
+                long seen;
+                synchronized (batchSpooled) {
+                    seen = spooledBatches;
+                }
+                List<Path> pending = pendingBatches();
+                if (pending.isEmpty()) {
+                    synchronized (batchSpooled) {
+                        if (spooledBatches == seen) {
+                            batchSpooled.wait(flushMillis);
+                        }
+                    }
+                    continue;
+                }
+                Path batch = pending.get(0);
+                if (send(batch)) {
+                    backoff = INITIAL_BACKOFF_MILLIS;
+                    if (pending.size() > 1) {
+                        Thread.sleep(DRAIN_PAUSE_MILLIS);
+                    }
+                } else {
+                    System.err.println("HQ sync: " + pending.size() + " batches waiting, retrying in " + backoff + " ms");
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closing; unsent batches stay on disk.
+        }
+    }
+
+    // Posts one batch file. Returns true if HQ accepted it, or rejected it as malformed,
+    // in which case it is set aside so it does not hold up the batches behind it.
+    private boolean send(Path batch) throws InterruptedException {
+        try (Metrics.Timing timing = Metrics.start(Metrics.Timer.SYNC_SEND, batch.getFileName().toString())) {
+            HttpRequest request = HttpRequest.newBuilder(endpoint)
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .header("Content-Encoding", "gzip")
+                    .POST(HttpRequest.BodyPublishers.ofFile(batch))
+                    .build();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            int status = response.statusCode();
+            if (status / 100 == 2) {
+                Files.delete(batch);
+                Metrics.increment(Metrics.Counter.SYNC_BATCHES_SENT);
+                return true;
+            }
+            if (status / 100 == 4 && status != 408 && status != 429) {
+                Path rejected = directory.resolve("rejected");
+                Files.createDirectories(rejected);
+                Files.move(batch, rejected.resolve(batch.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                Metrics.increment(Metrics.Counter.SYNC_BATCHES_FAILED);
+                System.err.println("HQ rejected " + batch.getFileName() + " (" + status + "), moved to " + rejected
+                        + ": " + response.body());
+                return true;
+            }
+            Metrics.increment(Metrics.Counter.SYNC_BATCHES_FAILED);
+            System.err.println("HQ sync of " + batch.getFileName() + " failed with status " + status);
+            return false;
+        } catch (IOException e) {
+            Metrics.increment(Metrics.Counter.SYNC_BATCHES_FAILED);
+            System.err.println("HQ sync of " + batch.getFileName() + " failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Returns the spooled batch files, oldest first.
+    private List<Path> pendingBatches() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(BATCH_PREFIX) && name.endsWith(BATCH_SUFFIX);
+            }).sorted().toList();
+        } catch (IOException e) {
+            System.err.println("Failed to list the order outbox: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    // The cursor file holds the next batch number and the highest order number spooled.
+    private void readCursor() throws IOException {
+        Path cursor = directory.resolve("cursor");
+        if (Files.exists(cursor)) {
+            String[] fields = Files.readString(cursor).trim().split(" ");
+            try {
+                nextBatch = Long.parseLong(fields[0]);
+                spooledThrough = Long.parseLong(fields[1]);
+            } catch (RuntimeException e) {
+                System.err.println("Ignoring a malformed outbox cursor: " + cursor);
+            }
+        }
+        // Never reuses the number of a batch still on disk, even if the cursor was lost.
+        for (Path batch : pendingBatches()) {
+            String name = batch.getFileName().toString();
+            long number = Long.parseLong(name.substring(BATCH_PREFIX.length(), name.length() - BATCH_SUFFIX.length()));
+            nextBatch = Math.max(nextBatch, number + 1);
+        }
+    }
+
+    private void writeCursor() throws IOException {
+        Path cursor = directory.resolve("cursor");
+        Path temporary = cursor.resolveSibling("cursor.tmp");
+        Files.writeString(temporary, nextBatch + " " + spooledThrough);
+        Files.move(temporary, cursor, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
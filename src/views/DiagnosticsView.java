@@ -0,0 +1,80 @@
+/**
+ * DiagnosticsView is the diagnostics dialog: live timers and counters, refreshed every second,
+ * with buttons to save the flight recording and to write the metrics to the log right away.
+ */
+
+package views;
+
+import diagnostics.Diagnostics;
+import diagnostics.Metrics;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class DiagnosticsView {
+    private final TextArea metricsArea = new TextArea();
+    private final Label statusLabel = new Label();
+
+    // Opens the diagnostics dialog and waits for it to be closed.
+    public void showAndWait() {
+        metricsArea.setEditable(false);
+        metricsArea.setStyle("-fx-font-family: 'Monospaced'; -fx-font-size: 13;");
+        metricsArea.setPrefColumnCount(72);
+        metricsArea.setPrefRowCount(18);
+        refresh();
+
+        Button saveRecordingButton = new Button("Save Recording");
+        saveRecordingButton.setDisable(!Diagnostics.isRecording());
+        saveRecordingButton.setOnAction(e -> saveRecording());
+        Button dumpButton = new Button("Write Metrics");
+        dumpButton.setOnAction(e -> dumpMetrics());
+        statusLabel.setText(Diagnostics.isRecording()
+                ? "Flight recording is running."
+                : "Flight recording is off (-Dcafepos.jfr=false).");
+
+        Timeline refresher = new Timeline(new KeyFrame(Duration.seconds(1), e -> refresh()));
+        refresher.setCycleCount(Timeline.INDEFINITE);
+        refresher.play();
+
+        DialogPane dialogPane = new DialogPane();
+        dialogPane.setContent(new VBox(8, metricsArea, new HBox(8, saveRecordingButton, dumpButton), statusLabel));
+        dialogPane.setMinSize(640, 420);
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Diagnostics");
+        alert.setHeaderText(null);
+        alert.setDialogPane(dialogPane);
+        alert.getButtonTypes().setAll(ButtonType.CLOSE);  // Add Close button
+        alert.showAndWait();
+        refresher.stop();
+    }
+
+    private void refresh() {
+        double scrollTop = metricsArea.getScrollTop();
+        metricsArea.setText(Metrics.format());
+        metricsArea.setScrollTop(scrollTop);
+    }
+
+    private void saveRecording() {
+        try {
+            Path file = Diagnostics.saveRecording();
+            statusLabel.setText("Recording saved to " + file);
+        } catch (IOException | IllegalStateException e) {
+            statusLabel.setText("Failed to save recording: " + e.getMessage());
+        }
+    }
+
+    private void dumpMetrics() {
+        try {
+            Diagnostics.dumpMetrics();
+            statusLabel.setText("Metrics written to " + Diagnostics.directory().resolve("metrics.log"));
+        } catch (IOException e) {
+            statusLabel.setText("Failed to write metrics: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * ImageCache shares decoded product images between the product grid, the cart table and the preview,
+ * so each image is decoded once per target size instead of on every UI refresh.
+ */
+
+package views;
+
+import diagnostics.Metrics;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.net.URL;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class ImageCache {
+    // Target sizes used by the POS screens. Images are decoded pre-scaled to these bounds,
+    // and each size keeps its own bounded LRU of decoded images. A pixel size of 0 keeps the full resolution.
+    public enum Size {
+        GRID(80, 128),
+        CART(50, 128),
+        PREVIEW(0, 8);
+
+        private final int pixels;
+        private final int capacity;
+
+        Size(int pixels, int capacity) {
+            this.pixels = pixels;
+            this.capacity = capacity;
+        }
+
+        public int getPixels() {
+            return pixels;
+        }
+    }
+
+    // Key under which an ImageView remembers the image it is currently waiting for.
+    private static final String PENDING_KEY = ImageCache.class.getName() + ".pending";
+    private static final Color PLACEHOLDER_COLOR = Color.web("#eeeeee");
+    private static final int PREVIEW_PLACEHOLDER_PIXELS = 100;
+
+    private static final Map<Size, Map<String, Image>> caches = new EnumMap<>(Size.class);
+    private static final Map<Size, Image> placeholders = new EnumMap<>(Size.class);
+
+    static {
+        for (Size size : Size.values()) {
+            caches.put(size, new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+                    return size() > size.capacity;
+                }
+            });
+        }
+    }
+
+    private ImageCache() {
+    }
+
+    // Returns the cached image for the given path and size, starting a background decode on a miss.
+    // The returned image may still be loading; use load(ImageView, ...) to show a placeholder meanwhile.
+    public static synchronized Image get(String path, Size size) {
+        Map<String, Image> cache = caches.get(size);
+        Image image = cache.get(path);
+        if (image != null && !image.isError()) {
+            Metrics.increment(Metrics.Counter.IMAGE_CACHE_HITS);
+        } else {
+            Metrics.increment(Metrics.Counter.IMAGE_CACHE_MISSES);
+            image = decode(path, size);
+            if (image == null) {
+                return placeholder(size);
+            }
+            cache.put(path, image);
+        }
+        return image;
+    }
+
+    // Shows the image for the given path in the view, using a placeholder until the background decode finishes.
+    // Safe to call repeatedly on recycled views: only the most recently requested image is ever shown.
+    public static void load(ImageView view, String path, Size size) {
+        if (path == null) {
+            view.getProperties().remove(PENDING_KEY);
+            view.setImage(null);
+            return;
+        }
+        Image image = get(path, size);
+        view.getProperties().put(PENDING_KEY, image);
+        if (image.getProgress() >= 1.0) {
+            view.setImage(image.isError() ? placeholder(size) : image);
+            return;
+        }
+        view.setImage(placeholder(size));
+        image.progressProperty().addListener(new ChangeListener<>() {
+            @Override
+            public void changed(ObservableValue<? extends Number> obs, Number oldValue, Number newValue) {
+                if (newValue.doubleValue() < 1.0) return;
+                image.progressProperty().removeListener(this);
+                if (image.isError()) {
+                    System.err.println("Failed to load image: " + path);
+                    return;
+                }
+                if (view.getProperties().get(PENDING_KEY) == image) {
+                    view.setImage(image);
+                }
+            }
+        });
+    }
+
+    // Starts a background decode of the resource, pre-scaled to the requested size.
+    // The decode is timed from here until the image finishes loading.
+    private static Image decode(String path, Size size) {
+        URL url = ImageCache.class.getResource(path);
+        if (url == null) {
+            System.err.println("Failed to load image: " + path);
+            Metrics.increment(Metrics.Counter.IMAGE_ERRORS);
+            return null;
+        }
+        Metrics.Timing timing = Metrics.start(Metrics.Timer.IMAGE_DECODE, path);
+        Image image = new Image(url.toExternalForm(), size.pixels, size.pixels, true, true, true);
+        if (image.getProgress() >= 1.0) {
+            finishDecode(image, timing);
+        } else {
+            image.progressProperty().addListener(new ChangeListener<>() {
+                @Override
+                public void changed(ObservableValue<? extends Number> obs, Number oldValue, Number newValue) {
+                    if (newValue.doubleValue() < 1.0) return;
+                    image.progressProperty().removeListener(this);
+                    finishDecode(image, timing);
+                }
+            });
+        }
+        return image;
+    }
+
+    private static void finishDecode(Image image, Metrics.Timing timing) {
+        timing.close();
+        if (image.isError()) {
+            Metrics.increment(Metrics.Counter.IMAGE_ERRORS);
+        }
+    }
+
+    // Returns a light grey square shown while an image is still decoding.
+    private static synchronized Image placeholder(Size size) {
+        return placeholders.computeIfAbsent(size, s -> {
+            int pixels = s.pixels > 0 ? s.pixels : PREVIEW_PLACEHOLDER_PIXELS;
+            WritableImage image = new WritableImage(pixels, pixels);
+            PixelWriter writer = image.getPixelWriter();
+            for (int y = 0; y < pixels; y++) {
+                for (int x = 0; x < pixels; x++) {
+                    writer.setColor(x, y, PLACEHOLDER_COLOR);
+                }
+            }
+            return image;
+        });
+    }
+}
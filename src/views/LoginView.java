@@ -1,26 +1,43 @@
 package views;
 
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Scene;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
-import javafx.stage.Stage;
-import models.User;
-
-import java.util.Objects;
+import storage.UserStore;
 
 public class LoginView {
     @FXML private TextField usernameField;
     @FXML private PasswordField passwordField;
+    @FXML private Button loginButton;
     @FXML private Label errorLabel;
 
-    private User user;
+    private UserStore userStore;
 
     public void initialize() {
-        // Hardcoded user
-        user = new User("Adi", "3165");
+        userStore = UserStore.shared();
+        showFirstRun();
+    }
+
+    // Clears the form for the next cashier; the login scene is reused after every logout.
+    public void reset() {
+        usernameField.clear();
+        passwordField.clear();
+        errorLabel.setVisible(false);
+        loginButton.setDisable(false);
+        showFirstRun();
+        usernameField.requestFocus();
+    }
+
+    // A till without accounts has no built-in login: the form creates the first cashier instead.
+    private void showFirstRun() {
+        boolean firstRun = userStore.isEmpty();
+        loginButton.setText(firstRun ? "Create Account" : "Login");
+        if (firstRun) {
+            errorLabel.setText("No accounts yet. Choose a username and PIN for the first cashier.");
+            errorLabel.setVisible(true);
+        }
     }
 
     @FXML
@@ -28,22 +45,38 @@ public class LoginView {
         String username = usernameField.getText().trim();
         String password = passwordField.getText().trim();
 
-        if (user.authenticate(username, password)) {
-            try {
-                Stage stage = (Stage) usernameField.getScene().getWindow();
-                FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource("/posview.fxml"));
-                Scene scene = new Scene(fxmlLoader.load(), 900, 600);
-                scene.getStylesheets().add(Objects.requireNonNull(getClass().getResource("/styles.css")).toExternalForm());
-                stage.setTitle("Cafe POS");
-                stage.setScene(scene);
-            } catch (Exception e) {
+        boolean authenticated;
+        try {
+            if (userStore.isEmpty()) {
+                userStore.createFirstUser(username, password);
+                authenticated = true;
+            } else {
+                authenticated = userStore.authenticate(username, password);
+            }
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            errorLabel.setText(e.getMessage());
+            errorLabel.setVisible(true);
+            return;
+        }
+        passwordField.clear();
+
+        if (authenticated) {
+            SceneManager sceneManager = SceneManager.shared();
+            if (!sceneManager.isPosReady()) {
+                errorLabel.setText("Loading...");
+                errorLabel.setVisible(true);
+            }
+            // Switches as soon as the POS screen, preloaded in the background, is ready.
+            loginButton.setDisable(true);
+            sceneManager.showPos(username, e -> {
                 e.printStackTrace();
+                loginButton.setDisable(false);
                 errorLabel.setText("Failed to load POS view: " + e.getMessage());
                 errorLabel.setVisible(true);
-            }
+            });
         } else {
-            errorLabel.setText("Invalid username or password");
+            errorLabel.setText("Invalid username or PIN");
             errorLabel.setVisible(true);
         }
     }
-}
\ No newline at end of file
+}
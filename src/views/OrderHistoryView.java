@@ -0,0 +1,207 @@
+/**
+ * OrderHistoryView is the order history dialog: a filter bar, a paged and virtualized list of orders
+ * (newest first), and the receipt of the selected order. Only the visible page is ever materialized.
+ */
+
+package views;
+
+import javafx.scene.control.*;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import models.Order;
+import storage.OrderHistory;
+import storage.ProductKey;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class OrderHistoryView {
+    private static final int PAGE_SIZE = 50;
+    private static final String ANY = "Any";
+    private static final DateTimeFormatter TIME_INPUT = DateTimeFormatter.ofPattern("H:mm");
+    private static final DateTimeFormatter TIME_DISPLAY =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    private final OrderHistory history;
+    private final Function<Order, String> billRenderer;
+
+    private final ComboBox<String> productFilter = new ComboBox<>();
+    // The products behind the filter's labels.
+    private final Map<String, ProductKey> productsByLabel = new HashMap<>();
+    private final ComboBox<String> cashierFilter = new ComboBox<>();
+    private final DatePicker dateFilter = new DatePicker();
+    private final TextField fromFilter = new TextField();
+    private final TextField toFilter = new TextField();
+    private final TextField orderNumberFilter = new TextField();
+    private final Label resultLabel = new Label();
+    private final Pagination pagination = new Pagination(1, 0);
+    private final TextArea billArea = new TextArea();
+
+    private final Button reprintButton = new Button("Reprint");
+    private final Consumer<Order> reprinter;
+
+    private OrderHistory.Selection selection;
+    private Order selectedOrder;
+
+    public OrderHistoryView(OrderHistory history, Function<Order, String> billRenderer) {
+        this(history, billRenderer, null);
+    }
+
+    // The reprinter, if not null, is offered as a Reprint button for the selected order.
+    public OrderHistoryView(OrderHistory history, Function<Order, String> billRenderer, Consumer<Order> reprinter) {
+        this.history = history;
+        this.billRenderer = billRenderer;
+        this.reprinter = reprinter;
+    }
+
+    // Opens the history dialog and waits for it to be closed.
+    public void showAndWait() {
+        List<String> products = new ArrayList<>();
+        products.add(ANY);
+        productsByLabel.clear();
+        for (ProductKey product : history.products()) {
+            productsByLabel.put(product.label(), product);
+            products.add(product.label());
+        }
+        productFilter.getItems().setAll(products);
+        productFilter.getSelectionModel().selectFirst();
+        List<String> cashiers = new ArrayList<>();
+        cashiers.add(ANY);
+        cashiers.addAll(history.cashiers());
+        cashierFilter.getItems().setAll(cashiers);
+        cashierFilter.getSelectionModel().selectFirst();
+        dateFilter.setPromptText("Any day");
+        dateFilter.setPrefWidth(120);
+        fromFilter.setPromptText("From (9:00)");
+        fromFilter.setPrefWidth(90);
+        toFilter.setPromptText("To (10:00)");
+        toFilter.setPrefWidth(90);
+        orderNumberFilter.setPromptText("Order #");
+        orderNumberFilter.setPrefWidth(80);
+        Button searchButton = new Button("Search");
+        searchButton.setDefaultButton(true);
+        searchButton.setOnAction(e -> search());
+
+        HBox filters = new HBox(8, productFilter, cashierFilter, dateFilter, fromFilter, toFilter,
+                orderNumberFilter, searchButton);
+        if (reprinter != null) {
+            reprintButton.setDisable(true);
+            reprintButton.setOnAction(e -> {
+                if (selectedOrder != null) {
+                    reprinter.accept(selectedOrder);
+                }
+            });
+            filters.getChildren().add(reprintButton);
+        }
+        pagination.setPrefWidth(360);
+        billArea.setEditable(false);
+        billArea.setStyle("-fx-font-family: 'Monospaced'; -fx-font-size: 14;");
+        billArea.setPrefColumnCount(50);
+
+        BorderPane content = new BorderPane();
+        content.setTop(new VBox(8, filters, resultLabel));
+        content.setCenter(pagination);
+        content.setRight(billArea);
+        search();
+
+        DialogPane dialogPane = new DialogPane();
+        dialogPane.setContent(content);
+        dialogPane.setMinSize(900, 500);
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Order History");
+        alert.setHeaderText(null);
+        alert.setDialogPane(dialogPane);
+        alert.getButtonTypes().setAll(ButtonType.CLOSE);  // Add Close button
+        alert.showAndWait();
+    }
+
+    // Runs the query from the filter bar and shows the first page of results.
+    private void search() {
+        OrderHistory.Query query;
+        try {
+            query = buildQuery();
+        } catch (DateTimeParseException | NumberFormatException e) {
+            resultLabel.setText("Enter times as H:mm and the order number as digits.");
+            return;
+        }
+        selection = history.select(query);
+        resultLabel.setText(selection.size() + (selection.size() == 1 ? " order" : " orders"));
+        pagination.setPageCount(Math.max(1, (selection.size() + PAGE_SIZE - 1) / PAGE_SIZE));
+        pagination.setCurrentPageIndex(0);
+        // Resetting the factory rebuilds the current page even if the page index did not change.
+        pagination.setPageFactory(this::createPage);
+        billArea.clear();
+        selectedOrder = null;
+        reprintButton.setDisable(true);
+    }
+
+    private OrderHistory.Query buildQuery() {
+        ProductKey product = productsByLabel.get(productFilter.getValue());
+        String cashier = ANY.equals(cashierFilter.getValue()) ? null : cashierFilter.getValue();
+        String orderNumberText = orderNumberFilter.getText().trim();
+        Long orderNumber = orderNumberText.isEmpty() ? null : Long.parseLong(orderNumberText);
+
+        // A time filter without a date applies to today.
+        String fromText = fromFilter.getText().trim();
+        String toText = toFilter.getText().trim();
+        LocalDate date = dateFilter.getValue();
+        if (date == null && (!fromText.isEmpty() || !toText.isEmpty())) {
+            date = LocalDate.now();
+        }
+        Long from = null;
+        Long to = null;
+        if (date != null) {
+            LocalTime fromTime = fromText.isEmpty() ? LocalTime.MIN : LocalTime.parse(fromText, TIME_INPUT);
+            from = toEpochMillis(date, fromTime);
+            to = toText.isEmpty()
+                    ? toEpochMillis(date.plusDays(1), LocalTime.MIN)
+                    : toEpochMillis(date, LocalTime.parse(toText, TIME_INPUT));
+        }
+        return new OrderHistory.Query(orderNumber, cashier, product, from, to);
+    }
+
+    private static long toEpochMillis(LocalDate date, LocalTime time) {
+        return date.atTime(time).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // Builds the list for one page, newest orders first. Only this page's orders are read.
+    private ListView<Order> createPage(int pageIndex) {
+        List<Order> page = new ArrayList<>(PAGE_SIZE);
+        int newest = selection.size() - 1 - pageIndex * PAGE_SIZE;
+        for (int i = newest; i > newest - PAGE_SIZE && i >= 0; i--) {
+            page.add(selection.get(i));
+        }
+        ListView<Order> list = new ListView<>();
+        list.getItems().setAll(page);
+        list.setCellFactory(view -> new ListCell<>() {
+            @Override
+            protected void updateItem(Order order, boolean empty) {
+                super.updateItem(order, empty);
+                setText(empty || order == null ? null : summarize(order));
+            }
+        });
+        list.getSelectionModel().selectedItemProperty().addListener((obs, oldOrder, order) -> {
+            selectedOrder = order;
+            reprintButton.setDisable(order == null);
+            billArea.setText(order != null ? billRenderer.apply(order) : "");
+        });
+        return list;
+    }
+
+    private static String summarize(Order order) {
+        return "#" + order.orderNumber() + "  " + TIME_DISPLAY.format(Instant.ofEpochMilli(order.timestamp()))
+                + "  " + (order.cashier() != null ? order.cashier() : "-")
+                + "  $" + order.total() + "  (" + order.itemCount() + " items)";
+    }
+}
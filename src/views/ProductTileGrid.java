@@ -0,0 +1,165 @@
+/**
+ * ProductTileGrid shows products as a grid of tiles, virtualized by a ListView whose rows each hold a
+ * strip of tiles. Only the rows on screen have nodes; as the grid scrolls, or the category changes, the
+ * same rows and tiles are refilled with other products. Switching between a category of 20 products
+ * and one of 5,000 costs the same.
+ */
+
+package views;
+
+import javafx.collections.FXCollections;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import models.Product;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+public final class ProductTileGrid extends ListView<List<Product>> {
+    public static final double TILE_WIDTH = 120;
+    public static final double TILE_HEIGHT = 130;
+    public static final double GAP = 10;
+
+    // Room left for the vertical scroll bar when working out how many tiles fit in a row.
+    private static final double SCROLL_BAR_ALLOWANCE = 20;
+
+    private List<Product> products = List.of();
+    private int columns = 1;
+    private Consumer<Product> onProductSelected = product -> { };
+
+    public ProductTileGrid() {
+        getStyleClass().add("product-grid");
+        setFixedCellSize(TILE_HEIGHT + GAP);
+        setFocusTraversable(false);
+        setCellFactory(list -> new RowCell());
+        widthProperty().addListener((obs, oldWidth, newWidth) -> updateColumns());
+    }
+
+    // Shows the products, in order, and scrolls back to the top.
+    // The list is not copied, so it must not change while it is shown.
+    public void setProducts(List<Product> products) {
+        this.products = products;
+        updateRows();
+        scrollTo(0);
+    }
+
+    // Shows a new version of the products in place, keeping the scroll position, e.g. after a catalog reload.
+    public void refreshProducts(List<Product> products) {
+        this.products = products;
+        updateRows();
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    // Called with the product whose tile was clicked.
+    public void setOnProductSelected(Consumer<Product> onProductSelected) {
+        this.onProductSelected = onProductSelected;
+    }
+
+    private void updateColumns() {
+        int fit = (int) ((getWidth() - SCROLL_BAR_ALLOWANCE + GAP) / (TILE_WIDTH + GAP));
+        int newColumns = Math.max(1, fit);
+        if (newColumns != columns) {
+            columns = newColumns;
+            updateRows();
+        }
+    }
+
+    // Replaces the rows with a view that slices the product list on demand, so no per-row lists are built up front.
+    private void updateRows() {
+        List<Product> shown = products;
+        int rowLength = columns;
+        setItems(FXCollections.observableList(new AbstractList<>() {
+            @Override
+            public List<Product> get(int row) {
+                int from = row * rowLength;
+                return shown.subList(from, Math.min(from + rowLength, shown.size()));
+            }
+
+            @Override
+            public int size() {
+                return (shown.size() + rowLength - 1) / rowLength;
+            }
+        }));
+    }
+
+    // A row of tiles. Tiles are created the first time a row needs them and then reused for every row it shows.
+    private final class RowCell extends ListCell<List<Product>> {
+        private final HBox row = new HBox(GAP);
+        private final List<Tile> tiles = new ArrayList<>();
+
+        @Override
+        protected void updateItem(List<Product> rowProducts, boolean empty) {
+            super.updateItem(rowProducts, empty);
+            setText(null);
+            if (empty || rowProducts == null) {
+                for (Tile tile : tiles) {
+                    tile.show(null);
+                }
+                setGraphic(null);
+                return;
+            }
+            while (tiles.size() < rowProducts.size()) {
+                Tile tile = new Tile();
+                tiles.add(tile);
+                row.getChildren().add(tile);
+            }
+            for (int i = 0; i < tiles.size(); i++) {
+                tiles.get(i).show(i < rowProducts.size() ? rowProducts.get(i) : null);
+            }
+            setGraphic(row);
+        }
+
+        // Rows are never shown as selected; a tile click selects the product instead.
+        @Override
+        public void updateSelected(boolean selected) {
+            super.updateSelected(false);
+        }
+    }
+
+    // A product tile: its image and name.
+    private final class Tile extends VBox {
+        private final ImageView imageView = new ImageView();
+        private final Label nameLabel = new Label();
+        private Product product;
+
+        Tile() {
+            super(5);
+            getStyleClass().add("product-box");
+            setAlignment(Pos.CENTER);
+            setMinSize(TILE_WIDTH, TILE_HEIGHT);
+            setPrefSize(TILE_WIDTH, TILE_HEIGHT);
+            setMaxSize(TILE_WIDTH, TILE_HEIGHT);
+            imageView.setFitWidth(80);
+            imageView.setFitHeight(80);
+            imageView.setPreserveRatio(true);
+            nameLabel.getStyleClass().add("product-label");
+            nameLabel.setMaxWidth(TILE_WIDTH - 20);
+            getChildren().addAll(imageView, nameLabel);
+            setOnMouseClicked(e -> {
+                if (product != null) {
+                    onProductSelected.accept(product);
+                }
+            });
+        }
+
+        // Shows the product, or hides the tile if it is null.
+        void show(Product product) {
+            this.product = product;
+            boolean visible = product != null;
+            setVisible(visible);
+            setManaged(visible);
+            nameLabel.setText(visible ? product.getName() : null);
+            ImageCache.load(imageView, visible ? product.getImage() : null, ImageCache.Size.GRID);
+        }
+    }
+}
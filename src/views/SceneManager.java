@@ -0,0 +1,163 @@
+/**
+ * SceneManager owns the window's two scenes, login and POS, and switches between them. Both are
+ * built once and reused, so logging in and out only swaps the scene and resumes or parks a session.
+ *
+ * While the login screen is up, the catalog, inventory, order journal, search index and PIN hash
+ * are loaded or warmed up on a background thread and the first category's thumbnails start decoding;
+ * the POS scene is then built on the FX thread, which is cheap once everything it reads is ready.
+ * A cashier who logs in before that finishes waits for it without freezing the window; one who logs in
+ * after it failed starts it again.
+ */
+
+package views;
+
+import controllers.POSViewController;
+import diagnostics.Metrics;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import models.Catalog;
+import models.Product;
+import printing.ReceiptSpooler;
+import services.CheckoutService;
+import storage.UserStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public final class SceneManager {
+    // Thumbnails decoded ahead of login: enough for the first screenful of the first category.
+    private static final int PRELOADED_THUMBNAILS = 24;
+
+    private static SceneManager shared;
+
+    private record PosScene(Scene scene, POSViewController controller) {
+    }
+
+    private final Stage stage;
+    private final Scene loginScene;
+    private final LoginView loginView;
+    // The POS screen, being prepared or ready. A failed attempt is replaced by a new one at the next login.
+    private CompletableFuture<PosScene> posScene;
+
+    private SceneManager(Stage stage) throws IOException {
+        this.stage = stage;
+        FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource("/loginview.fxml"));
+        loginScene = styled(new Scene(fxmlLoader.load(), 300, 400));
+        loginView = fxmlLoader.getController();
+        preparePos();
+    }
+
+    // Shows the login screen in the stage and starts preparing the POS screen behind it.
+    public static synchronized SceneManager start(Stage stage) throws IOException {
+        shared = new SceneManager(stage);
+        shared.showLogin();
+        return shared;
+    }
+
+    public static synchronized SceneManager shared() {
+        if (shared == null) {
+            throw new IllegalStateException("SceneManager has not been started");
+        }
+        return shared;
+    }
+
+    public void showLogin() {
+        try (Metrics.Timing timing = Metrics.start(Metrics.Timer.SCENE_SWITCH, "login")) {
+            loginView.reset();
+            stage.setTitle("Cafe POS Login");
+            stage.setScene(loginScene);
+        }
+    }
+
+    // Switches to the POS screen with a new session for the cashier, once the POS screen is ready.
+    // The error callback runs on the FX thread if the POS screen could not be built.
+    public void showPos(String cashier, Consumer<Throwable> onError) {
+        preparePos().whenCompleteAsync((pos, error) -> {
+            if (error != null) {
+                onError.accept(error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            try (Metrics.Timing timing = Metrics.start(Metrics.Timer.SCENE_SWITCH, "pos")) {
+                pos.controller().startSession(cashier);
+                stage.setTitle("Cafe POS");
+                stage.setScene(pos.scene());
+            }
+        }, Platform::runLater);
+    }
+
+    public synchronized boolean isPosReady() {
+        return posScene.isDone() && !posScene.isCompletedExceptionally();
+    }
+
+    // Completes once the current attempt has built the POS screen, e.g. to report the time to a usable till.
+    public synchronized CompletableFuture<Void> posReady() {
+        return posScene.thenApply(pos -> null);
+    }
+
+    // Returns the POS screen, starting to prepare it again if the last attempt failed, e.g. because
+    // the data directory could not be read at the time.
+    private synchronized CompletableFuture<PosScene> preparePos() {
+        if (posScene == null || posScene.isCompletedExceptionally()) {
+            Metrics.Timing preload = Metrics.start(Metrics.Timer.POS_PRELOAD);
+            posScene = CompletableFuture.runAsync(SceneManager::preloadModel)
+                    .thenApplyAsync(ignored -> loadPosScene(), Platform::runLater)
+                    .whenComplete((scene, error) -> {
+                        preload.close();
+                        if (error != null) {
+                            System.err.println("Failed to preload POS view: " + error.getMessage());
+                        }
+                    });
+        }
+        return posScene;
+    }
+
+    // Records the time from process start until now under the startup timer.
+    public static void recordStartup(Metrics.Timer timer) {
+        Instant started = ProcessHandle.current().info().startInstant().orElse(Instant.now());
+        Metrics.record(timer, Duration.between(started, Instant.now()).toNanos());
+    }
+
+    // Off the FX thread: everything the POS screen reads on initialize, plus its first thumbnails.
+    private static void preloadModel() {
+        CheckoutService service = CheckoutService.shared();
+        ReceiptSpooler.shared();
+        UserStore.shared().warmUp();
+        Catalog catalog = service.getCatalog();
+        catalog.getSearchIndex();
+        List<String> categories = catalog.getCategories();
+        if (!categories.isEmpty()) {
+            List<Product> products = catalog.getProducts(categories.get(0));
+            for (Product product : products.subList(0, Math.min(PRELOADED_THUMBNAILS, products.size()))) {
+                ImageCache.get(product.getImage(), ImageCache.Size.GRID);
+            }
+        }
+    }
+
+    private PosScene loadPosScene() {
+        try {
+            FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource("/posview.fxml"));
+            Parent root = fxmlLoader.load();
+            Scene scene = styled(new Scene(root, 900, 600));
+            // Applies the stylesheet now, so the first switch to the POS screen does not pay for it.
+            root.applyCss();
+            root.layout();
+            return new PosScene(scene, fxmlLoader.getController());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Scene styled(Scene scene) {
+        scene.getStylesheets().add(Objects.requireNonNull(getClass().getResource("/styles.css")).toExternalForm());
+        return scene;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * StationView is the preparation stations' display: one column per station with its open tickets,
+ * oldest first. Bump marks the selected ticket as done, or the oldest if none is selected.
+ *
+ * It opens in its own window, so it can be moved to a screen at the bar while the till keeps
+ * working. Every half second it refreshes the ticket ages, and the lists only for stations whose
+ * board has changed.
+ */
+
+package views;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+import kitchen.KitchenQueue;
+import kitchen.Station;
+import kitchen.StationBoard;
+import kitchen.Ticket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StationView {
+    // One station's column.
+    private static final class Column {
+        final StationBoard board;
+        final Label header = new Label();
+        final ListView<Ticket> tickets = new ListView<>();
+        long shownVersion = -1;
+        // When the shown tickets' ages were taken.
+        long snapshotMillis;
+
+        Column(StationBoard board) {
+            this.board = board;
+        }
+    }
+
+    private final KitchenQueue kitchen;
+    private final List<Column> columns = new ArrayList<>();
+
+    public StationView(KitchenQueue kitchen) {
+        this.kitchen = kitchen;
+    }
+
+    // Opens the station display in its own window without waiting for it to be closed.
+    public void show() {
+        HBox stations = new HBox(12);
+        for (Station station : Station.values()) {
+            Column column = new Column(kitchen.getBoard(station));
+            column.header.setStyle("-fx-font-size: 16; -fx-font-weight: bold;");
+            column.tickets.setCellFactory(list -> new TicketCell(column));
+            column.tickets.setPrefWidth(260);
+            VBox.setVgrow(column.tickets, Priority.ALWAYS);
+            Button bumpButton = new Button("Bump");
+            bumpButton.setMaxWidth(Double.MAX_VALUE);
+            bumpButton.setOnAction(e -> bump(column));
+            VBox box = new VBox(8, column.header, column.tickets, bumpButton);
+            HBox.setHgrow(box, Priority.ALWAYS);
+            stations.getChildren().add(box);
+            columns.add(column);
+        }
+        stations.setStyle("-fx-padding: 12;");
+        refresh();
+
+        Timeline refresher = new Timeline(new KeyFrame(Duration.millis(500), e -> refresh()));
+        refresher.setCycleCount(Timeline.INDEFINITE);
+        refresher.play();
+
+        Stage stage = new Stage();
+        stage.setTitle("Stations");
+        stage.setScene(new Scene(stations, 840, 560));
+        stage.setOnHidden(e -> refresher.stop());
+        stage.show();
+    }
+
+    private void bump(Column column) {
+        Ticket selected = column.tickets.getSelectionModel().getSelectedItem();
+        if (selected != null) {
+            column.board.bump(selected.orderNumber());
+        } else {
+            column.board.bumpOldest();
+        }
+        refresh();
+    }
+
+    private void refresh() {
+        for (Column column : columns) {
+            StationBoard board = column.board;
+            column.header.setText(board.getStation().getLabel() + "  (" + board.getOpenCount() + " open, oldest "
+                    + formatWait(board.getOldestWaitMillis()) + ")");
+            long version = board.getVersion();
+            if (version != column.shownVersion) {
+                column.shownVersion = version;
+                column.snapshotMillis = System.currentTimeMillis();
+                column.tickets.getItems().setAll(board.snapshot());
+            } else {
+                // Redraws the visible cells so their ages stay current.
+                column.tickets.refresh();
+            }
+        }
+    }
+
+    private static String formatWait(long millis) {
+        long seconds = millis / 1000;
+        return seconds / 60 + ":" + String.format("%02d", seconds % 60);
+    }
+
+    // Shows a ticket as its order number, cashier, age and lines.
+    private static final class TicketCell extends ListCell<Ticket> {
+        private final Column column;
+
+        TicketCell(Column column) {
+            this.column = column;
+        }
+
+        @Override
+        protected void updateItem(Ticket ticket, boolean empty) {
+            super.updateItem(ticket, empty);
+            if (empty || ticket == null) {
+                setText(null);
+                return;
+            }
+            // The age in the snapshot, plus the time since it was taken.
+            long waitingMillis = ticket.waitingMillis() + System.currentTimeMillis() - column.snapshotMillis;
+            StringBuilder text = new StringBuilder("#").append(ticket.orderNumber())
+                    .append("  ").append(ticket.cashier())
+                    .append("  ").append(formatWait(waitingMillis));
+            for (Ticket.Line line : ticket.lines()) {
+                text.append('\n').append(line.quantity()).append(" x ").append(line.name());
+            }
+            setText(text.toString());
+        }
+    }
+}
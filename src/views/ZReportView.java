@@ -0,0 +1,74 @@
+/**
+ * ZReportView is the Z report dialog: pick a day and the report for it is computed from the sales
+ * ledger in the background and shown as fixed-width text.
+ */
+
+package views;
+
+import javafx.application.Platform;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import reports.ZReport;
+import reports.ZReportEngine;
+import storage.SalesLedger;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.CompletableFuture;
+
+public class ZReportView {
+    private final SalesLedger ledger;
+    private final ZReportEngine engine = new ZReportEngine();
+    private final TextArea reportArea = new TextArea();
+    private final Label statusLabel = new Label();
+
+    public ZReportView(SalesLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    // Opens the report dialog on today's report and waits for it to be closed.
+    public void showAndWait() {
+        reportArea.setEditable(false);
+        reportArea.setStyle("-fx-font-family: 'Monospaced'; -fx-font-size: 13;");
+        reportArea.setPrefColumnCount(72);
+        reportArea.setPrefRowCount(24);
+
+        DatePicker dayPicker = new DatePicker(LocalDate.now());
+        dayPicker.setOnAction(e -> {
+            if (dayPicker.getValue() != null) {
+                refresh(dayPicker.getValue());
+            }
+        });
+        refresh(dayPicker.getValue());
+
+        DialogPane dialogPane = new DialogPane();
+        dialogPane.setContent(new VBox(8, new HBox(8, new Label("Day:"), dayPicker), reportArea, statusLabel));
+        dialogPane.setMinSize(680, 520);
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Z Report");
+        alert.setHeaderText(null);
+        alert.setDialogPane(dialogPane);
+        alert.getButtonTypes().setAll(ButtonType.CLOSE);  // Add Close button
+        alert.showAndWait();
+    }
+
+    // Computes the day's report off the FX thread; a long trading history never stalls the dialog.
+    private void refresh(LocalDate day) {
+        statusLabel.setText("Computing report for " + day + "...");
+        ZoneId zone = ZoneId.systemDefault();
+        long started = System.nanoTime();
+        CompletableFuture.supplyAsync(() -> engine.forDay(ledger, day, zone)).whenComplete((report, error) ->
+                Platform.runLater(() -> show(report, error, (System.nanoTime() - started) / 1_000_000)));
+    }
+
+    private void show(ZReport report, Throwable error, long millis) {
+        if (error != null) {
+            reportArea.clear();
+            statusLabel.setText("Failed to compute report: " + error.getMessage());
+            return;
+        }
+        reportArea.setText(report.format());
+        statusLabel.setText(report.orders() + " orders, computed in " + millis + " ms.");
+    }
+}